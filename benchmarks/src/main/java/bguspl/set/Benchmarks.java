@@ -0,0 +1,41 @@
+package bguspl.set;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. Accepts the usual JMH command line options, and unless they say otherwise the results are
+ * written as JSON to jmh-result.json in the working directory, so runs before and after a change can be compared.
+ */
+public class Benchmarks {
+
+    /**
+     * The file the results are written to, unless -rff is given.
+     */
+    public static final String RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        if (options.shouldList() || options.shouldListWithParams() || options.shouldListProfilers()
+                || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue()) builder.resultFormat(ResultFormatType.JSON);
+        if (!options.getResult().hasValue()) builder.result(RESULT_FILE);
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,141 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Plays whole games with the real dealer and player threads and many computer players, and checks the measured
+ * latencies against percentile budgets. Arguments are Key=Value settings: any game setting (e.g. ComputerPlayers=200,
+ * ExecutionMode=Virtual), plus:
+ * <ul>
+ *     <li>Games - the number of games to play at once (default 1).</li>
+ *     <li>TimeoutSeconds - how long to wait for the games to end (default 120).</li>
+ *     <li>Budget.&lt;metric&gt;.&lt;percentile&gt; - the largest value allowed for a percentile (P50, P99, P99.9, Max)
+ *     of a metric: KeyToVerdictMillis, DealerLoopMillis or VerdictsPerSecond (a Min budget is the smallest value
+ *     allowed, e.g. Budget.VerdictsPerSecond.Min=1000).</li>
+ * </ul>
+ * Exits with status 1 if a budget is exceeded or a game did not end in time.
+ */
+public class LoadTest {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    public static void main(String[] args) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("ComputerPlayers", "100");
+        properties.setProperty("CollectStats", "True");
+        properties.setProperty("StatsExporters", "");
+        properties.setProperty("Games", "1");
+        properties.setProperty("TimeoutSeconds", "120");
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) throw new IllegalArgumentException("expected Key=Value, got " + arg);
+            properties.setProperty(arg.substring(0, split).trim(), arg.substring(split + 1).trim());
+        }
+
+        boolean passed = run(properties);
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Plays the games and reports the measurements.
+     *
+     * @param properties - the game settings and the load test settings.
+     * @return - true iff all the games ended in time and no budget was exceeded.
+     */
+    public static boolean run(Properties properties) throws InterruptedException {
+        Config config = GameEngine.fastHeadlessConfig(properties);
+        int gameCount = Integer.parseInt(properties.getProperty("Games"));
+        long timeoutMillis = (long) (Double.parseDouble(properties.getProperty("TimeoutSeconds")) * 1000);
+
+        List<GameEngine> games = new ArrayList<>();
+        for (int i = 0; i < gameCount; ++i)
+            games.add(new GameEngine(config));
+
+        Histogram verdictsPerSecond = new Histogram();
+        Thread sampler = new Thread(() -> sampleVerdicts(games, verdictsPerSecond), "load-test-sampler");
+        sampler.setDaemon(true);
+
+        long start = System.nanoTime();
+        sampler.start();
+        List<GameEngine.Result> results = GameEngine.playAll(games, timeoutMillis);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sampler.interrupt();
+        sampler.join();
+
+        Histogram keyToVerdict = new Histogram();
+        Histogram dealerLoop = new Histogram();
+        long verdicts = 0;
+        for (GameEngine game : games) {
+            keyToVerdict.add(game.env.stats.keyToVerdictNanos);
+            dealerLoop.add(game.env.stats.dealerLoopNanos);
+            verdicts += game.env.stats.verdicts();
+        }
+
+        boolean passed = true;
+        System.out.printf("%d games, %d players each, %s, %.2fs%n", gameCount, config.players, config.executionMode,
+                seconds);
+        for (GameEngine.Result result : results) {
+            if (!result.completed) passed = false;
+            System.out.printf("game %d %s after %dms, top score %d%n", result.game,
+                    result.completed ? "completed" : "did not end", result.durationMillis,
+                    result.winners.length == 0 ? 0 : result.scores[result.winners[0]]);
+        }
+        System.out.printf("verdicts: %d (%.1f per second)%n", verdicts, verdicts / seconds);
+        System.out.println("KeyToVerdictMillis " + keyToVerdict.summary(NANOS_PER_MILLI));
+        System.out.println("DealerLoopMillis   " + dealerLoop.summary(NANOS_PER_MILLI));
+        System.out.println("VerdictsPerSecond  " + verdictsPerSecond.summary(1));
+
+        Map<String, Histogram> metrics = new LinkedHashMap<>();
+        metrics.put("KeyToVerdictMillis", keyToVerdict);
+        metrics.put("DealerLoopMillis", dealerLoop);
+        metrics.put("VerdictsPerSecond", verdictsPerSecond);
+        for (String key : properties.stringPropertyNames())
+            if (key.startsWith("Budget."))
+                passed &= checkBudget(key, Double.parseDouble(properties.getProperty(key)), metrics);
+
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    /**
+     * Records the number of verdicts given in each second, in all the games together.
+     */
+    private static void sampleVerdicts(List<GameEngine> games, Histogram verdictsPerSecond) {
+        long last = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long verdicts = games.stream().mapToLong(game -> game.env.stats.verdicts()).sum();
+            verdictsPerSecond.record(verdicts - last);
+            last = verdicts;
+        }
+    }
+
+    private static boolean checkBudget(String key, double budget, Map<String, Histogram> metrics) {
+        String[] parts = key.split("\\.", 3);
+        Histogram histogram = parts.length == 3 ? metrics.get(parts[1]) : null;
+        if (histogram == null) throw new IllegalArgumentException("unknown budget " + key);
+
+        double scale = parts[1].endsWith("Millis") ? NANOS_PER_MILLI : 1;
+        String percentile = parts[2].toUpperCase();
+        double value;
+        boolean passed;
+        if (percentile.equals("MIN")) {
+            value = histogram.valueAtPercentile(0) / scale;
+            passed = value >= budget;
+        } else {
+            value = (percentile.equals("MAX") ? histogram.max() : histogram.valueAtPercentile(
+                    Double.parseDouble(percentile.substring(1)))) / scale;
+            passed = value <= budget;
+        }
+        System.out.printf("%s: %.3f (budget %s) %s%n", key, value, budget, passed ? "ok" : "EXCEEDED");
+        return passed;
+    }
+}
@@ -0,0 +1,97 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks set validation (testSet) and set detection (findSets) on random tables.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    /**
+     * The number of cards on the table (capped by the deck size).
+     */
+    @Param({"12", "15", "21", "81"})
+    public int tableSize;
+
+    /**
+     * The card shape, as featureSize x featureCount.
+     */
+    @Param({"3x4", "3x5", "4x4"})
+    public String shape;
+
+    private Util util;
+    private List<Integer> table;
+
+    /**
+     * Candidate sets of featureSize cards from the table, about a third of them legal.
+     */
+    private int[][] candidates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] sizes = shape.split("x");
+        Properties properties = new Properties();
+        properties.setProperty("FeatureSize", sizes[0]);
+        properties.setProperty("FeatureCount", sizes[1]);
+        Config config = GameEngine.headlessConfig(properties);
+        util = new UtilImpl(config);
+
+        Random random = new Random(tableSize * 31L + shape.hashCode());
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        table = new ArrayList<>(deck.subList(0, Math.min(tableSize, deck.size())));
+
+        List<int[]> legal = util.findSets(deck, 1024);
+        candidates = new int[1024][];
+        for (int i = 0; i < candidates.length; ++i) {
+            if (i % 3 == 0 && !legal.isEmpty())
+                candidates[i] = legal.get(random.nextInt(legal.size()));
+            else {
+                Collections.shuffle(deck, random);
+                candidates[i] = deck.subList(0, config.featureSize).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        next = (next + 1) & (candidates.length - 1);
+        return util.testSet(candidates[next]);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSet() {
+        return util.findSets(table, 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSets() {
+        return util.findSets(table, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,19 @@
+package bguspl.set.ex;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A logger that drops everything, so logging does not show up in the measurements.
+ */
+final class BenchmarkLogger {
+
+    private BenchmarkLogger() {}
+
+    static Logger create() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameEngine;
+import bguspl.set.RecordingUserInterface;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the dealer checking submitted sets (checklegal) while players keep submitting. Every player has one
+ * submission in flight at a time, as in the game: it submits, waits for the verdict, and submits again. The submitted
+ * cards never form a set, so the table does not change between verdicts. The number of submitting players is set
+ * with the JMH -tg option (the default is 3 players and the dealer).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DealerBenchmark {
+
+    /**
+     * The game shared by the dealer and the players of a benchmark group.
+     */
+    @State(Scope.Group)
+    public static class Game {
+
+        static final int MAX_PLAYERS = 64;
+
+        Dealer dealer;
+        Player[] players;
+        final AtomicInteger joined = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Properties properties = new Properties();
+            properties.setProperty("ComputerPlayers", Integer.toString(MAX_PLAYERS));
+            Config config = GameEngine.headlessConfig(properties);
+            Env env = new Env(BenchmarkLogger.create(), config, new RecordingUserInterface(config), new UtilImpl(config));
+            Table table = new Table(env);
+            players = new Player[config.players];
+            dealer = new Dealer(env, table, players);
+
+            int[] cards = notASet(env);
+            for (int i = 0; i < players.length; ++i) {
+                players[i] = new Player(env, dealer, table, i, false);
+                for (int card : cards)
+                    players[i].select(card);
+            }
+        }
+
+        private static int[] notASet(Env env) {
+            int[] cards = new int[env.config.featureSize];
+            for (int i = 0; i < cards.length; ++i)
+                cards[i] = i;
+            while (env.util.testSet(cards))
+                ++cards[cards.length - 1];
+            return cards;
+        }
+    }
+
+    /**
+     * A submitting player, counting the verdicts it received.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Submitter {
+
+        public long verdicts;
+
+        Player player;
+        boolean pending;
+
+        @Setup(Level.Trial)
+        public void setUp(Game game) {
+            player = game.players[game.joined.getAndIncrement() % game.players.length];
+        }
+    }
+
+    @Benchmark
+    @Group("verdicts")
+    @GroupThreads(3)
+    public void submit(Game game, Submitter submitter) {
+        Player player = submitter.player;
+        if (!submitter.pending) {
+            submitter.pending = true;
+            game.dealer.submitCards(player);
+        } else if (player.legalset != 2) {
+            player.legalset = 2;
+            player.isFrozen = false;
+            submitter.pending = false;
+            submitter.verdicts++;
+        }
+    }
+
+    @Benchmark
+    @Group("verdicts")
+    @GroupThreads(1)
+    public void check(Game game) {
+        game.dealer.checklegal();
+    }
+}
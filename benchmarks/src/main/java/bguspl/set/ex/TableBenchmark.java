@@ -0,0 +1,76 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameEngine;
+import bguspl.set.RecordingUserInterface;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks replacing a card on a full table (removeCard followed by placeCard), with no table delay. This includes
+ * keeping the index of the sets on the table up to date.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    /**
+     * The number of slots on the table (3 rows).
+     */
+    @Param({"12", "15", "21", "81"})
+    public int tableSize;
+
+    private Table table;
+    private ArrayDeque<Integer> deck;
+    private int slot;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("Rows", "3");
+        properties.setProperty("Columns", Integer.toString(tableSize / 3));
+        Config config = GameEngine.headlessConfig(properties);
+        Env env = new Env(BenchmarkLogger.create(), config, new RecordingUserInterface(config), new UtilImpl(config));
+        table = new Table(env);
+
+        List<Integer> cards = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(cards, new Random(tableSize));
+        deck = new ArrayDeque<>(cards);
+        for (int i = 0; i < config.tableSize; ++i)
+            table.placeCard(deck.poll(), i);
+    }
+
+    @Benchmark
+    public int replaceCard() {
+        slot = slot + 1 == tableSize ? 0 : slot + 1;
+        int card = table.cardAt(slot);
+        table.removeCard(slot);
+        deck.add(card);
+        table.placeCard(deck.poll(), slot);
+        return table.countCards();
+    }
+}
@@ -0,0 +1,156 @@
+package bguspl.set;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Hands log records to another handler (e.g. a FileHandler) on a background thread, so the threads that log never
+ * wait for formatting or I/O. The records wait in a bounded ring buffer and are written in batches, with a single
+ * flush per batch. If the buffer is full the new records are dropped (and the number dropped is logged later), so a
+ * slow disk cannot slow down the game.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The largest number of records written between two flushes of the target.
+     */
+    private static final int BATCH = 256;
+
+    private final Handler target;
+    private final LogRecord[] ring;
+    private final int mask;
+    private long head; // the next record to write
+    private long tail; // the next free place
+    private long dropped;
+    private boolean writing;
+    private boolean closed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final Thread writer;
+
+    /**
+     * @param target   - the handler that writes the records.
+     * @param capacity - the number of records the buffer holds (rounded up to a power of 2).
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        ring = new LogRecord[size];
+        mask = size - 1;
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+        lock.lock();
+        try {
+            if (closed) return;
+            if (tail - head == ring.length) {
+                ++dropped;
+                return;
+            }
+            ring[(int) (tail++ & mask)] = record;
+            if (tail - head == 1) notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all the records published so far are written, and flushes the target.
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            long end = tail;
+            while ((head < end || writing) && writer.isAlive())
+                written.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+        target.flush();
+    }
+
+    /**
+     * Writes the records that are still in the buffer, then closes the target.
+     */
+    @Override
+    public void close() {
+        flush();
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    @Override
+    public void setFormatter(Formatter formatter) {
+        target.setFormatter(formatter);
+    }
+
+    @Override
+    public Formatter getFormatter() {
+        return target.getFormatter();
+    }
+
+    /**
+     * The loop of the writer thread.
+     */
+    private void write() {
+        LogRecord[] batch = new LogRecord[BATCH];
+        while (true) {
+            int count = 0;
+            long lost;
+            lock.lock();
+            try {
+                writing = false;
+                written.signalAll();
+                while (head == tail && !closed)
+                    notEmpty.awaitUninterruptibly();
+                if (head == tail) return;
+                while (head != tail && count < batch.length) {
+                    int i = (int) (head++ & mask);
+                    batch[count++] = ring[i];
+                    ring[i] = null;
+                }
+                lost = dropped;
+                dropped = 0;
+                writing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (lost > 0)
+                    target.publish(new LogRecord(Level.WARNING, "log buffer was full, " + lost + " records were dropped"));
+                for (int i = 0; i < count; ++i) {
+                    target.publish(batch[i]);
+                    batch[i] = null;
+                }
+                target.flush();
+            } catch (RuntimeException e) {
+                reportError("cannot write log records", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
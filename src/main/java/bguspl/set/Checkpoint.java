@@ -0,0 +1,182 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Saves snapshots of a running game to a memory-mapped file, periodically, so the game survives a restart of its
+ * process (see load and GameEngine.restore). Saving a snapshot is a copy into the mapped memory, which the operating
+ * system writes to the file on its own (and close forces it).
+ * The file starts with MAGIC and the size of a slot, followed by two slots that are written in turns, each a header
+ * (the sequence number of its snapshot, the length of the snapshot and its CRC32) and a snapshot. A snapshot is
+ * never written over the last complete one, and its sequence number is written last, so a crash in the middle of a
+ * write leaves the snapshot before it.
+ */
+public class Checkpoint implements Closeable {
+
+    public static final int MAGIC = 0x53455443; // "SETC"
+
+    private static final int FILE_HEADER = 4 + 4;
+    private static final int SLOT_HEADER = 8 + 4 + 4;
+
+    private final GameEngine game;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slotSize;
+    private long sequence;
+    private boolean closed;
+
+    /**
+     * Cancels the periodic saves (null if they were not started).
+     */
+    private Runnable saves;
+
+    /**
+     * The save in progress, so a slow dealer does not pile up requests.
+     */
+    private volatile CompletableFuture<Void> saving = CompletableFuture.completedFuture(null);
+
+    /**
+     * Opens (or creates) the checkpoint file of a game. The snapshots already in the file are kept until newer ones
+     * replace them.
+     *
+     * @param game - the game to save.
+     * @param file - the file.
+     */
+    public Checkpoint(GameEngine game, Path file) throws IOException {
+        this.game = game;
+        slotSize = SLOT_HEADER + GameSnapshot.maxSize(game.env.config);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER + 2L * slotSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (map.getInt(0) != MAGIC || map.getInt(4) != slotSize) {
+            // a new file, or one of a game of another size
+            for (int slot = 0; slot < 2; ++slot)
+                map.putLong(offset(slot), 0);
+            map.putInt(4, slotSize);
+            map.putInt(0, MAGIC);
+        }
+        for (int slot = 0; slot < 2; ++slot)
+            if (valid(map, offset(slot), slotSize) != null) sequence = Math.max(sequence, map.getLong(offset(slot)));
+    }
+
+    private int offset(int slot) {
+        return FILE_HEADER + slot * slotSize;
+    }
+
+    /**
+     * Saves a snapshot of the game every given number of milliseconds, on the shared scheduler of its workers.
+     *
+     * @param periodMillis - the number of milliseconds between snapshots.
+     */
+    public synchronized void start(long periodMillis) {
+        if (saves == null && !closed)
+            saves = game.env.workers.repeat("checkpoint", () -> {
+                if (saving.isDone()) saving = save();
+            }, periodMillis);
+    }
+
+    /**
+     * Saves a snapshot of the game (the dealer takes it and copies it to the file).
+     *
+     * @return - completes once the snapshot is saved.
+     */
+    public CompletableFuture<Void> save() {
+        return game.snapshot().thenAccept(this::write);
+    }
+
+    private synchronized void write(GameSnapshot snapshot) {
+        if (closed) return;
+        long next = sequence + 1;
+        int start = offset((int) (next % 2));
+        ByteBuffer data = map.duplicate();
+        data.position(start + SLOT_HEADER);
+        snapshot.write(data);
+        int length = data.position() - start - SLOT_HEADER;
+
+        CRC32 crc = new CRC32();
+        data.flip().position(start + SLOT_HEADER);
+        crc.update(data);
+        map.putInt(start + 8, length);
+        map.putInt(start + 12, (int) crc.getValue());
+        map.putLong(start, next);
+        sequence = next;
+    }
+
+    /**
+     * @return - the number of snapshots saved to the file (including the ones saved before it was opened).
+     */
+    public synchronized long saved() {
+        return sequence;
+    }
+
+    /**
+     * Stops saving snapshots, and writes the file to the disk.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (saves != null) saves.run();
+        map.force();
+        channel.close();
+    }
+
+    /**
+     * Reads the latest complete snapshot of a checkpoint file.
+     *
+     * @param file - the file.
+     * @return - the snapshot, or null if the file does not exist or has no complete snapshot.
+     */
+    public static GameSnapshot load(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < FILE_HEADER) return null;
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int slotSize = map.getInt(4);
+            if (map.getInt(0) != MAGIC || slotSize < SLOT_HEADER || FILE_HEADER + 2L * slotSize > channel.size())
+                return null;
+            GameSnapshot latest = null;
+            long latestSequence = 0;
+            for (int slot = 0; slot < 2; ++slot) {
+                int start = FILE_HEADER + slot * slotSize;
+                GameSnapshot snapshot = valid(map, start, slotSize);
+                if (snapshot != null && map.getLong(start) > latestSequence) {
+                    latest = snapshot;
+                    latestSequence = map.getLong(start);
+                }
+            }
+            return latest;
+        }
+    }
+
+    /**
+     * @return - the snapshot in a slot, or null if the slot has no complete snapshot.
+     */
+    private static GameSnapshot valid(ByteBuffer map, int start, int slotSize) {
+        int length = map.getInt(start + 8);
+        if (map.getLong(start) <= 0 || length <= 0 || length > slotSize - SLOT_HEADER) return null;
+        ByteBuffer data = map.duplicate();
+        data.limit(start + SLOT_HEADER + length).position(start + SLOT_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        if ((int) crc.getValue() != map.getInt(start + 12)) return null;
+        try {
+            return GameSnapshot.read(data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The card that completes a set with each pair of cards (see Util::completeSet), for featureSize == 3. The table is a
+ * deckSize x deckSize matrix of card ids, of bytes for decks of up to 256 cards (6.5KB for the standard deck) and of
+ * shorts for larger ones. It never changes once built, so it is built once per card shape, on first use, and shared
+ * by every game in the JVM.
+ * Other shapes, and decks too large for a matrix, compute the card from the features instead.
+ */
+final class CompletionTable {
+
+    /**
+     * The largest deck a matrix is built for (a million entries, 2MB).
+     */
+    private static final int MAX_DECK = 1024;
+
+    /**
+     * The table of each card shape, by featureSize and featureCount.
+     */
+    private static final Map<Long, CompletionTable> shared = new ConcurrentHashMap<>();
+
+    private final FeatureTable features;
+    private final int deckSize;
+
+    /**
+     * thirds[a * deckSize + b] is the card that completes a set with a and b (as an unsigned value, a itself when
+     * a == b). One of them is null, both are if there is no matrix.
+     */
+    private final byte[] byteThirds;
+    private final short[] shortThirds;
+
+    private CompletionTable(FeatureTable features) {
+        this.features = features;
+        this.deckSize = features.deckSize;
+
+        boolean matrix = features.featureSize == 3 && deckSize <= MAX_DECK;
+        byteThirds = matrix && deckSize <= 256 ? new byte[deckSize * deckSize] : null;
+        shortThirds = matrix && byteThirds == null ? new short[deckSize * deckSize] : null;
+        if (!matrix) return;
+
+        for (int a = 0; a < deckSize; ++a)
+            for (int b = a; b < deckSize; ++b) {
+                int c = compute(a, b);
+                if (byteThirds != null)
+                    byteThirds[a * deckSize + b] = byteThirds[b * deckSize + a] = (byte) c;
+                else
+                    shortThirds[a * deckSize + b] = shortThirds[b * deckSize + a] = (short) c;
+            }
+    }
+
+    /**
+     * @param features - the features of the cards.
+     * @return - the table of the card shape of the features, built by the first caller.
+     */
+    static CompletionTable of(FeatureTable features) {
+        long shape = (long) features.featureSize << Integer.SIZE | features.featureCount;
+        return shared.computeIfAbsent(shape, key -> new CompletionTable(features));
+    }
+
+    /**
+     * Computes the card that completes a set with the two given cards (featureSize == 3 only): in each feature the
+     * third value is the one that makes the three values all equal or all different, i.e. -(a + b) mod 3.
+     */
+    private int compute(int a, int b) {
+        int[] fa = features.features(a), fb = features.features(b);
+        int card = 0;
+        for (int i = 0; i < features.featureCount; ++i)
+            card += (6 - fa[i] - fb[i]) % 3 * features.weight(i);
+        return card;
+    }
+
+    /**
+     * @param a - a card id.
+     * @param b - another card id.
+     * @return - the card that completes a set with a and b (featureSize == 3 only), or -1 if a == b.
+     */
+    int third(int a, int b) {
+        if (a == b) return -1;
+        if (byteThirds != null) return byteThirds[a * deckSize + b] & 0xFF;
+        if (shortThirds != null) return shortThirds[a * deckSize + b] & 0xFFFF;
+        return compute(a, b);
+    }
+
+    /**
+     * @param cards - featureSize - 1 card ids.
+     * @return - the card that completes a set with the cards (see Util::completeSet).
+     */
+    int complete(int[] cards) {
+        if (features.featureSize == 3 && cards.length == 2) return third(cards[0], cards[1]);
+        return features.complete(cards);
+    }
+}
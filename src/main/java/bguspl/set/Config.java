@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,6 +16,31 @@ import java.util.logging.Logger;
  */
 public class Config {
 
+    /**
+     * Where the log records go: a file (written in the background), memory only, or nowhere
+     */
+    public enum LogOutput {FILE, MEMORY, NONE}
+
+    /**
+     * The level of the messages to log
+     */
+    public final Level logLevel;
+
+    /**
+     * The format of the log records (see String.format: 1 is the time, 2 the level and 3 the message)
+     */
+    public final String logFormat;
+
+    /**
+     * Where the log records go
+     */
+    public final LogOutput logOutput;
+
+    /**
+     * The number of log records waiting to be written (or kept in memory)
+     */
+    public final int logBufferSize;
+
     /**
      * Random spin cycles for Config::randomSpin (for debugging / testing)
      */
@@ -36,6 +62,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * Whether large searches for sets (see Util::findSets) are split over the cores or not
+     */
+    public final boolean parallelFindSets;
+
     /**
      * The number of human players in the game.
      */
@@ -56,6 +87,21 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * How the computer players choose their key presses (Random or Solver)
+     */
+    public final String botStrategy;
+
+    /**
+     * The number of milliseconds a solver computer player takes to react before going for a set
+     */
+    public final long botReactionMillis;
+
+    /**
+     * The probability that a solver computer player goes for a legal set (otherwise it picks a wrong card on purpose)
+     */
+    public final double botAccuracy;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -66,6 +112,12 @@ public class Config {
      */
     public final long turnTimeoutWarningMillis;
 
+    /**
+     * The number of milliseconds between the checks of the turn timer display (it changes every second, or every
+     * tenth of a second in the warning time)
+     */
+    public final long timerTickMillis;
+
     /**
      * The number of milliseconds a player gets frozen for when he scores a point
      */
@@ -92,6 +144,47 @@ public class Config {
      */
     public final String[] playerNames;
 
+    /**
+     * How the player, computer player and timer loops run (threads, pooled, virtual or deterministic)
+     */
+    public final Workers.Mode executionMode;
+
+    /**
+     * The seed of all the random choices of the game (shuffles, computer players, the deterministic scheduler), or 0
+     * for a different game every time
+     */
+    public final long seed;
+
+    /**
+     * The random number streams of the parts of the game that are not players (players use their ids).
+     */
+    public static final int DEALER_STREAM = -1, SCHEDULER_STREAM = -2, UTIL_STREAM = -3;
+
+    /**
+     * Whether to collect measurements of the game (latencies, verdicts etc.) or not
+     */
+    public final boolean collectStats;
+
+    /**
+     * Where to publish the measurements of the game, if they are collected (Text and/or Jmx)
+     */
+    public final String[] statsExporters;
+
+    /**
+     * The directory to record the events of each game in, for replaying them later (empty to record nothing)
+     */
+    public final String eventLogDirectory;
+
+    /**
+     * The file to save snapshots of the game to, and to continue the game from after a restart (empty for none)
+     */
+    public final String checkpointFile;
+
+    /**
+     * The time between two snapshots of the game in the checkpoint file (in milliseconds)
+     */
+    public final long checkpointMillis;
+
     /**
      * The number of rows in the grid of cards on the table (and on the screen)
      */
@@ -183,9 +276,18 @@ public class Config {
     public Config(Logger logger, Properties properties) {
 
         // logger settings
-        Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
-        String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
+        logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
+        logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        LogOutput output = LogOutput.FILE;
+        String outputName = properties.getProperty("LogOutput", "File").trim();
+        try {
+            output = LogOutput.valueOf(outputName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.severe("warning: invalid log output " + outputName + ". Using a file.");
+        }
+        logOutput = output;
+        logBufferSize = Integer.parseInt(properties.getProperty("LogBufferSize", "8192"));
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -197,6 +299,7 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelFindSets = Boolean.parseBoolean(properties.getProperty("ParallelFindSets", "True"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -204,13 +307,33 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        botStrategy = properties.getProperty("BotStrategy", "Random").trim();
+        botReactionMillis = (long) (Double.parseDouble(properties.getProperty("BotReactionSeconds", "0.5")) * 1000.0);
+        botAccuracy = Double.parseDouble(properties.getProperty("BotAccuracy", "0.9"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
+        timerTickMillis = Math.max(1, (long) (Double.parseDouble(properties.getProperty("TimerTickSeconds", "0.1")) * 1000.0));
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
 
+        Workers.Mode mode = Workers.Mode.THREADS;
+        String modeName = properties.getProperty("ExecutionMode", "Threads").trim();
+        try {
+            mode = Workers.Mode.valueOf(modeName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.severe("warning: invalid execution mode " + modeName + ". Using threads.");
+        }
+        executionMode = mode;
+        seed = Long.parseLong(properties.getProperty("Seed", "0").trim());
+        collectStats = Boolean.parseBoolean(properties.getProperty("CollectStats", "False"));
+        statsExporters = Arrays.stream(properties.getProperty("StatsExporters", "Text").split(","))
+                .map(String::trim).filter(name -> !name.isEmpty()).toArray(String[]::new);
+        eventLogDirectory = properties.getProperty("EventLogDirectory", "").trim();
+        checkpointFile = properties.getProperty("CheckpointFile", "").trim();
+        checkpointMillis = Math.max(1, (long) (Double.parseDouble(properties.getProperty("CheckpointSeconds", "5")) * 1000.0));
+
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
         playerNames = new String[players];
@@ -244,4 +367,14 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * @param stream - the part of the game the numbers are for (a player id, or one of the *_STREAM constants), so
+     *               every part draws its own sequence.
+     * @return - a random number generator derived from the seed (an unseeded one if the seed is 0).
+     */
+    public Random random(int stream) {
+        if (seed == 0) return new Random();
+        return new Random(seed * 0x9E3779B97F4A7C15L + stream);
+    }
 }
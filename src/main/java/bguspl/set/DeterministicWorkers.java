@@ -0,0 +1,326 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Runs the loops of a game one at a time, so a game with the same seed (and computer players only) plays out the same
+ * way every time. Every loop still has a thread of its own, but only the loop holding the turn runs. The turn passes
+ * on only when that loop blocks (parks, sleeps, joins another loop or ends) or yields, to a loop drawn at random (from
+ * the seeded generator) among the loops that can run.
+ * Time is virtual: sleeping, timed parking and periodic tasks wait for the virtual clock, which advances a millisecond
+ * per yield (the loops that yield are busy loops), and jumps to the next wake up when every loop is blocked. If every
+ * loop is blocked with nothing to wake it up, the deadlock is logged with the state of every loop.
+ * Threads outside the game (e.g. the one that terminates it) may still unpark and interrupt the loops.
+ */
+class DeterministicWorkers extends Workers {
+
+    private enum State {RUNNABLE, PARKED, SLEEPING, DONE}
+
+    private final Random random;
+    private final Logger logger;
+
+    /**
+     * The loops that did not end, in the order they were created.
+     */
+    private final List<Task> tasks = new ArrayList<>();
+    private final Map<Thread, Task> threads = new HashMap<>();
+
+    /**
+     * The loop holding the turn (null if every loop is blocked, or none was created yet).
+     */
+    private Task current;
+
+    /**
+     * The virtual time, in milliseconds.
+     */
+    private long now;
+
+    DeterministicWorkers(Random random, Logger logger) {
+        this.random = random;
+        this.logger = logger;
+    }
+
+    @Override
+    public Worker create(String name, Runnable target) {
+        return new Task(name, target);
+    }
+
+    @Override
+    public Runnable task(String name, Runnable target) {
+        Task task = new Task(name, target);
+        synchronized (this) {
+            add(task);
+        }
+        return task::run;
+    }
+
+    @Override
+    public void park(Object blocker) {
+        park(blocker, -1);
+    }
+
+    @Override
+    public void parkNanos(Object blocker, long nanos) {
+        // the virtual clock counts milliseconds, so the wait is rounded up to make sure the time comes
+        if (nanos > 0) park(blocker, (nanos + 999_999) / 1_000_000);
+    }
+
+    private void park(Object blocker, long millis) {
+        synchronized (this) {
+            Task task = threads.get(Thread.currentThread());
+            if (task != null) {
+                takeInterrupt(task);
+                if (task.permit) task.permit = false;
+                else if (!Thread.currentThread().isInterrupted()) block(task, State.PARKED, blocker, millis);
+                return;
+            }
+        }
+        // a thread outside the game
+        if (millis < 0) super.park(blocker);
+        else super.parkNanos(blocker, millis * 1_000_000);
+    }
+
+    @Override
+    public void unpark(Thread thread) {
+        if (thread == null) return;
+        synchronized (this) {
+            Task task = threads.get(thread);
+            if (task != null) {
+                if (task.state == State.PARKED) wake(task);
+                else task.permit = true;
+                return;
+            }
+        }
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        synchronized (this) {
+            Task task = threads.get(Thread.currentThread());
+            if (task != null) {
+                takeInterrupt(task);
+                if (Thread.interrupted()) throw new InterruptedException();
+                block(task, State.SLEEPING, null, Math.max(0, millis));
+                if (Thread.interrupted()) throw new InterruptedException();
+                return;
+            }
+        }
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public void yieldTurn() {
+        synchronized (this) {
+            Task task = threads.get(Thread.currentThread());
+            if (task != null) {
+                ++now;
+                passTurn();
+                awaitTurn(task);
+                return;
+            }
+        }
+        Thread.yield();
+    }
+
+    /**
+     * @return - the virtual time (in nanoseconds, with a resolution of a millisecond).
+     */
+    @Override
+    public synchronized long nanoTime() {
+        return now * 1_000_000;
+    }
+
+    /**
+     * Runs a periodic task as a loop that sleeps on the virtual clock.
+     */
+    @Override
+    public Runnable repeat(String name, Runnable task, long periodMillis) {
+        Worker worker = create(name, () -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    task.run();
+                    sleep(periodMillis);
+                }
+            } catch (InterruptedException ignored) {}
+        });
+        worker.start();
+        return worker::interrupt;
+    }
+
+    private void add(Task task) {
+        tasks.add(task);
+        if (current == null) current = task;
+    }
+
+    /**
+     * Blocks the current loop and passes the turn on. Returns when the loop holds the turn again.
+     */
+    private void block(Task task, State state, Object blocker, long millis) {
+        task.state = state;
+        task.blocker = blocker;
+        task.wakeAt = millis < 0 ? -1 : now + millis;
+        passTurn();
+        awaitTurn(task);
+    }
+
+    private void wake(Task task) {
+        if (task.state != State.PARKED && task.state != State.SLEEPING) return;
+        task.state = State.RUNNABLE;
+        task.blocker = null;
+        task.wakeAt = -1;
+        if (current == null) {
+            // every loop was blocked, so the woken loop takes the turn
+            current = task;
+            notifyAll();
+        }
+    }
+
+    private void passTurn() {
+        current = next();
+        notifyAll();
+    }
+
+    private Task next() {
+        List<Task> runnable = runnable();
+        if (runnable.isEmpty()) {
+            long wakeAt = Long.MAX_VALUE;
+            for (Task task : tasks)
+                if (task.wakeAt >= 0) wakeAt = Math.min(wakeAt, task.wakeAt);
+            if (wakeAt == Long.MAX_VALUE) {
+                if (!tasks.isEmpty()) logger.severe(deadlock());
+                return null;
+            }
+            now = Math.max(now, wakeAt);
+            runnable = runnable();
+        }
+        return runnable.get(random.nextInt(runnable.size()));
+    }
+
+    /**
+     * @return - the loops that can run, after waking the ones whose time came.
+     */
+    private List<Task> runnable() {
+        List<Task> runnable = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task.wakeAt >= 0 && task.wakeAt <= now) {
+                task.state = State.RUNNABLE;
+                task.blocker = null;
+                task.wakeAt = -1;
+            }
+            if (task.state == State.RUNNABLE) runnable.add(task);
+        }
+        return runnable;
+    }
+
+    private void awaitTurn(Task task) {
+        while (current != task) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // interrupted by a thread outside the game
+                task.interrupted = true;
+                wake(task);
+            }
+        }
+        takeInterrupt(task);
+    }
+
+    /**
+     * Moves an interrupt of the loop to the interrupt status of its thread, where the loop checks it.
+     */
+    private void takeInterrupt(Task task) {
+        if (!task.interrupted) return;
+        task.interrupted = false;
+        Thread.currentThread().interrupt();
+    }
+
+    private String deadlock() {
+        StringBuilder report = new StringBuilder("deadlock at virtual time " + now + "ms, no loop can run:");
+        for (Task task : tasks)
+            report.append("\n  ").append(task.name).append(' ').append(task.state)
+                    .append(task.blocker == null ? "" : " on " + task.blocker);
+        return report.toString();
+    }
+
+    private class Task implements Worker {
+
+        final String name;
+        final Runnable target;
+        State state = State.RUNNABLE;
+        Object blocker;
+        long wakeAt = -1;
+        boolean permit;
+        boolean interrupted;
+        Thread thread;
+
+        Task(String name, Runnable target) {
+            this.name = name;
+            this.target = target;
+        }
+
+        @Override
+        public void start() {
+            synchronized (DeterministicWorkers.this) {
+                add(this);
+            }
+            new Thread(this::run, name).start();
+        }
+
+        void run() {
+            synchronized (DeterministicWorkers.this) {
+                thread = Thread.currentThread();
+                threads.put(thread, this);
+                awaitTurn(this);
+            }
+            try {
+                target.run();
+            } finally {
+                synchronized (DeterministicWorkers.this) {
+                    state = State.DONE;
+                    tasks.remove(this);
+                    threads.remove(thread);
+                    for (Task task : tasks)
+                        if (task.blocker == this) wake(task);
+                    if (current == this) passTurn();
+                    else DeterministicWorkers.this.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void interrupt() {
+            synchronized (DeterministicWorkers.this) {
+                if (state == State.DONE) return;
+                interrupted = true;
+                wake(this);
+            }
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            synchronized (DeterministicWorkers.this) {
+                Task caller = threads.get(Thread.currentThread());
+                while (state != State.DONE) {
+                    if (caller == null) DeterministicWorkers.this.wait(); // a thread outside the game
+                    else {
+                        takeInterrupt(caller);
+                        if (Thread.interrupted()) throw new InterruptedException();
+                        block(caller, State.PARKED, this, -1);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
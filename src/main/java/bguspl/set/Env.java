@@ -8,11 +8,21 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Workers workers;
+    public final GameStats stats;
+    public final EventLog events;
 
-    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Workers workers) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
-        this.util = util;
+        this.workers = workers;
+        this.stats = new GameStats(config.collectStats, config.players);
+        this.util = config.collectStats ? new MeasuredUtil(util, stats) : util;
+        this.events = EventLog.open(config, logger);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, Workers.forConfig(config, logger));
     }
 }
@@ -0,0 +1,208 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Records every change of a game's state as a compact binary stream, which GameReplay can play back without threads.
+ * The file starts with a header (MAGIC, VERSION, and the card and table dimensions as varints), followed by the
+ * events. An event is its type (one byte), the nanoseconds since the previous event (a varint) and two arguments (as
+ * varints, 0 if unused). The events are collected in a buffer and written to the file through a FileChannel when the
+ * buffer fills up, and when the log is closed.
+ */
+public class EventLog {
+
+    public static final int MAGIC = 0x53455445; // "SETE"
+    public static final byte VERSION = 1;
+
+    /**
+     * The kinds of events, with the meaning of their arguments.
+     */
+    public enum Type {
+        CARD_PLACED,   // card, slot
+        CARD_REMOVED,  // slot (the tokens on the slot are removed with the card)
+        TOKEN_PLACED,  // player, slot
+        TOKEN_REMOVED, // player, slot
+        SUBMITTED,     // player
+        VERDICT,       // player, 1 iff the set was legal
+        SCORE,         // player, score
+        RESHUFFLE,     // 1 iff the turn timed out (otherwise there was no set on the table)
+        TIMER_RESET;
+
+        private static final Type[] VALUES = values();
+
+        static Type of(int code) {
+            return VALUES[code];
+        }
+    }
+
+    /**
+     * An event log that records nothing.
+     */
+    public static final EventLog NONE = new EventLog();
+
+    private static final AtomicInteger nextLog = new AtomicInteger();
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_EVENT_SIZE = 1 + 10 + 5 + 5;
+
+    private final Logger logger;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Path path;
+    private volatile boolean enabled;
+    private long lastNanos;
+
+    private EventLog() {
+        logger = null;
+        channel = null;
+        buffer = null;
+        path = null;
+    }
+
+    private EventLog(Logger logger, Config config, Path path) throws IOException {
+        this.logger = logger;
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(MAGIC).put(VERSION);
+        for (int value : new int[]{config.featureSize, config.featureCount, config.rows, config.columns, config.players})
+            putVarLong(buffer, value);
+        lastNanos = System.nanoTime();
+        enabled = true;
+    }
+
+    /**
+     * Opens a new event log in the configured directory, if there is one.
+     *
+     * @param config - the game configuration (see Config.eventLogDirectory).
+     * @param logger - the logger to report errors to.
+     * @return - the event log, or NONE if events are not recorded (or the file cannot be created).
+     */
+    public static EventLog open(Config config, Logger logger) {
+        if (config.eventLogDirectory.isEmpty()) return NONE;
+        try {
+            Path directory = Paths.get(config.eventLogDirectory);
+            Files.createDirectories(directory);
+            String name = "game-" + System.currentTimeMillis() + "-" + nextLog.getAndIncrement() + ".events";
+            return new EventLog(logger, config, directory.resolve(name));
+        } catch (IOException | RuntimeException e) {
+            logger.severe("warning: cannot create an event log in " + config.eventLogDirectory + ": " + e);
+            return NONE;
+        }
+    }
+
+    /**
+     * @return - the file the events are written to (null if events are not recorded).
+     */
+    public Path path() {
+        return path;
+    }
+
+    public void cardPlaced(int card, int slot) {
+        record(Type.CARD_PLACED, card, slot);
+    }
+
+    public void cardRemoved(int slot) {
+        record(Type.CARD_REMOVED, slot, 0);
+    }
+
+    public void tokenPlaced(int player, int slot) {
+        record(Type.TOKEN_PLACED, player, slot);
+    }
+
+    public void tokenRemoved(int player, int slot) {
+        record(Type.TOKEN_REMOVED, player, slot);
+    }
+
+    public void submitted(int player) {
+        record(Type.SUBMITTED, player, 0);
+    }
+
+    public void verdict(int player, boolean legal) {
+        record(Type.VERDICT, player, legal ? 1 : 0);
+    }
+
+    public void score(int player, int score) {
+        record(Type.SCORE, player, score);
+    }
+
+    public void reshuffled(boolean byTimer) {
+        record(Type.RESHUFFLE, byTimer ? 1 : 0, 0);
+    }
+
+    public void timerReset() {
+        record(Type.TIMER_RESET, 0, 0);
+    }
+
+    /**
+     * Appends an event. The events of all threads go through here, so their order in the file is the order they
+     * happened in (as far as the callers are concerned).
+     */
+    private void record(Type type, int a, int b) {
+        if (!enabled) return;
+        synchronized (this) {
+            if (!enabled) return;
+            long now = System.nanoTime();
+            if (buffer.remaining() < MAX_EVENT_SIZE) write();
+            buffer.put((byte) type.ordinal());
+            putVarLong(buffer, Math.max(0, now - lastNanos));
+            putVarLong(buffer, a);
+            putVarLong(buffer, b);
+            lastNanos = now;
+        }
+    }
+
+    /**
+     * Writes the buffered events and closes the file.
+     */
+    public void close() {
+        if (!enabled) return;
+        synchronized (this) {
+            if (!enabled) return;
+            write();
+            enabled = false;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.severe("warning: cannot close the event log " + path + ": " + e);
+            }
+        }
+    }
+
+    private void write() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            logger.severe("warning: cannot write the event log " + path + ", no more events are recorded: " + e);
+            enabled = false;
+        }
+        buffer.clear();
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package bguspl.set;
+
+import java.util.BitSet;
+
+/**
+ * The features of every card in the deck (see Util::cardToFeatures), computed once per configuration.
+ */
+final class FeatureTable {
+
+    /**
+     * The number of choices for each feature.
+     */
+    final int featureSize;
+
+    /**
+     * The number of features on each card.
+     */
+    final int featureCount;
+
+    /**
+     * The total number of cards in the deck.
+     */
+    final int deckSize;
+
+    /**
+     * The features of each card (features[card][i] is the i-th feature of the card).
+     */
+    private final int[][] features;
+
+    /**
+     * The value of each feature digit in a card id (weights[i] == featureSize ^ (featureCount - 1 - i)).
+     */
+    private final int[] weights;
+
+    FeatureTable(Config config) {
+        featureSize = config.featureSize;
+        featureCount = config.featureCount;
+        deckSize = config.deckSize;
+
+        weights = new int[featureCount];
+        for (int i = featureCount - 1, weight = 1; i >= 0; --i, weight *= featureSize)
+            weights[i] = weight;
+
+        features = new int[deckSize][featureCount];
+        for (int card = 0; card < deckSize; ++card)
+            for (int i = featureCount - 1, id = card; i >= 0; --i, id /= featureSize)
+                features[card][i] = id % featureSize;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the (shared, do not modify) array of features of the card.
+     */
+    int[] features(int card) {
+        return features[card];
+    }
+
+    /**
+     * @param i - the feature index.
+     * @return - the value of the i-th feature digit in a card id.
+     */
+    int weight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * Checks if the given cards form a legal set: every feature is either the same on all cards or different on all.
+     * Each feature is checked with a mask of the values seen, so nothing is allocated.
+     *
+     * @param cards - the card ids.
+     * @return - true iff the cards form a legal set.
+     */
+    boolean isSet(int[] cards) {
+        if (featureSize > Long.SIZE) return isSetPairwise(cards);
+
+        for (int i = 0; i < featureCount; ++i) {
+            long seen = 0;
+            for (int card : cards)
+                seen |= 1L << features[card][i];
+            int distinct = Long.bitCount(seen);
+            if ((distinct == 1) == (distinct == cards.length)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the card that completes a set with the given cards (see Util::completeSet): each feature is the value
+     * all the cards share, or the value missing when the cards all differ.
+     *
+     * @param cards - featureSize - 1 card ids.
+     * @return - the card id, or -1 if there is no such card (or it is not unique).
+     */
+    int complete(int[] cards) {
+        if (cards.length != featureSize - 1 || cards.length < 2) return -1;
+
+        // the values seen are a mask, as in isSet, unless there are too many of them
+        BitSet wide = featureSize > Long.SIZE ? new BitSet(featureSize) : null;
+        int card = 0;
+        boolean differs = false;
+        for (int i = 0; i < featureCount; ++i) {
+            long seen = 0;
+            if (wide != null) wide.clear();
+            for (int other : cards)
+                if (wide == null) seen |= 1L << features[other][i];
+                else wide.set(features[other][i]);
+            int distinct = wide == null ? Long.bitCount(seen) : wide.cardinality();
+            if (distinct == 1)
+                card += features[cards[0]][i] * weights[i];
+            else if (distinct == cards.length) {
+                card += (wide == null ? Long.numberOfTrailingZeros(~seen) : wide.nextClearBit(0)) * weights[i];
+                differs = true;
+            } else return -1;
+        }
+        // a card that differs from the given ones in no feature is one of them
+        return differs ? card : -1;
+    }
+
+    /**
+     * The same as isSet, for features with too many values to fit in a mask.
+     */
+    private boolean isSetPairwise(int[] cards) {
+        for (int i = 0; i < featureCount; ++i) {
+            boolean sameSame = true, butDifferent = true;
+
+            for (int j = 1; j < cards.length; ++j)
+                if (features[cards[0]][i] != features[cards[j]][i]) {
+                    sameSame = false;
+                    break;
+                }
+
+            for (int j = 1; j < cards.length && butDifferent; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features[cards[j - 1]][i] == features[cards[k]][i]) {
+                        butDifferent = false;
+                        break;
+                    }
+
+            if (sameSame == butDifferent) return false;
+        }
+        return true;
+    }
+}
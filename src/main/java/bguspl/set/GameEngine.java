@@ -0,0 +1,302 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * This class builds and runs a single game: its environment, table, dealer and players. A game holds no static state,
+ * so any number of games can run at once in the same process.
+ */
+public class GameEngine {
+
+    /**
+     * Supplies the user interface of a game, once its util and (not yet created) players array exist.
+     */
+    public interface UserInterfaceFactory {
+        UserInterface create(Util util, Player[] players);
+    }
+
+    /**
+     * The results of a game.
+     */
+    public static class Result {
+
+        /**
+         * The id of the game.
+         */
+        public final int game;
+
+        /**
+         * The final score of each player.
+         */
+        public final int[] scores;
+
+        /**
+         * The ids of the players with the highest score.
+         */
+        public final int[] winners;
+
+        /**
+         * True iff the game ended by itself (rather than by a timeout or an explicit termination).
+         */
+        public final boolean completed;
+
+        /**
+         * The number of milliseconds the game ran for.
+         */
+        public final long durationMillis;
+
+        Result(int game, int[] scores, int[] winners, boolean completed, long durationMillis) {
+            this.game = game;
+            this.scores = scores;
+            this.winners = winners;
+            this.completed = completed;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "game " + game + (completed ? " completed" : " terminated") + " after " + durationMillis + "ms"
+                    + " scores: " + Arrays.toString(scores) + " winners: " + Arrays.toString(winners);
+        }
+    }
+
+    private static final AtomicInteger nextGame = new AtomicInteger();
+
+    /**
+     * The id of this game (unique in the process).
+     */
+    public final int id;
+
+    public final Env env;
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+    private final List<MetricsExporter> exporters = new ArrayList<>();
+
+    private ThreadLogger dealerThread;
+    private volatile boolean terminated;
+    private boolean exported;
+    private long startTime;
+
+    /**
+     * Creates a game with the given user interface.
+     *
+     * @param logger    - the logger of the game.
+     * @param config    - the game configuration.
+     * @param uiFactory - creates the user interface of the game.
+     */
+    public GameEngine(Logger logger, Config config, UserInterfaceFactory uiFactory) {
+        id = nextGame.getAndIncrement();
+        Util util = new UtilImpl(config);
+        players = new Player[config.players];
+        env = new Env(logger, config, uiFactory.create(util, players), util);
+
+        table = new Table(env);
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+
+        if (config.collectStats)
+            for (String exporter : config.statsExporters)
+                if (exporter.equalsIgnoreCase("Text")) exporters.add(new TextMetricsExporter(System.out));
+                else if (exporter.equalsIgnoreCase("Jmx")) exporters.add(new JmxMetricsExporter(logger));
+                else logger.severe("warning: unknown stats exporter " + exporter + ".");
+    }
+
+    /**
+     * Creates a headless game (no user interface). Nothing is logged, unless LogOutput is Memory: then the records
+     * are kept in a MemoryLogHandler of the game's logger.
+     *
+     * @param config - the game configuration.
+     */
+    public GameEngine(Config config) {
+        this(headlessLogger(config), config, (util, players) -> new RecordingUserInterface(config));
+    }
+
+    /**
+     * Creates the configuration of a headless game: computer players only, no table delays, no pause at the end and
+     * no logging, unless the given properties say otherwise.
+     *
+     * @param overrides - configuration properties to use instead of the headless defaults.
+     * @return - the configuration.
+     */
+    public static Config headlessConfig(Properties overrides) {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("LogOutput", "None");
+        properties.putAll(overrides);
+        return new Config(silentLogger(), properties);
+    }
+
+    /**
+     * Creates the configuration of a headless game that plays as fast as it can (see headlessConfig): three computer
+     * players that are never frozen, and no turn timer, unless the given properties say otherwise.
+     *
+     * @param overrides - configuration properties to use instead of the defaults.
+     * @return - the configuration.
+     */
+    public static Config fastHeadlessConfig(Properties overrides) {
+        Properties properties = new Properties();
+        properties.setProperty("ComputerPlayers", "3");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TurnTimeoutSeconds", "-1");
+        properties.putAll(overrides);
+        return headlessConfig(properties);
+    }
+
+    private static Logger silentLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+
+    private static Logger headlessLogger(Config config) {
+        Logger logger = silentLogger();
+        if (config.logOutput == Config.LogOutput.MEMORY) {
+            logger.addHandler(new MemoryLogHandler(config.logBufferSize));
+            logger.setLevel(config.logLevel);
+        }
+        return logger;
+    }
+
+    /**
+     * Starts the dealer thread of the game.
+     */
+    public void start() {
+        startTime = System.currentTimeMillis();
+        exporters.forEach(exporter -> exporter.open(name(), env.stats));
+        dealerThread = new ThreadLogger(env.workers.task("dealer", dealer), "dealer-" + id, env.logger);
+        dealerThread.startWithLog();
+    }
+
+    /**
+     * Waits for the game to end. If it does not end in time, terminates it.
+     *
+     * @param timeoutMillis - the maximum number of milliseconds to wait (0 to wait forever).
+     * @return - the results of the game.
+     */
+    public Result join(long timeoutMillis) throws InterruptedException {
+        dealerThread.join(timeoutMillis);
+        if (dealerThread.isAlive()) terminate();
+        dealerThread.joinWithLog();
+        finish();
+        return result();
+    }
+
+    /**
+     * Runs the game on the calling thread until it ends, instead of start and join (e.g. on a thread of a pool that
+     * hosts many games). The thread is named after the dealer of the game while it runs.
+     *
+     * @return - the results of the game.
+     */
+    public Result run() {
+        startTime = System.currentTimeMillis();
+        exporters.forEach(exporter -> exporter.open(name(), env.stats));
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        thread.setName("dealer-" + id);
+        ThreadLogger.logStart(env.logger, thread.getName());
+        try {
+            env.workers.task("dealer", dealer).run();
+        } finally {
+            // an interrupt meant for the dealer must not reach the next task of the thread
+            Thread.interrupted();
+            ThreadLogger.logStop(env.logger, thread.getName());
+            thread.setName(threadName);
+            finish();
+        }
+        return result();
+    }
+
+    private void finish() {
+        env.events.close();
+        synchronized (exporters) {
+            if (!exported) exporters.forEach(exporter -> exporter.close(name(), env.stats));
+            exported = true;
+        }
+    }
+
+    /**
+     * Asks for a snapshot of the running game (see Dealer.snapshot).
+     *
+     * @return - the snapshot, once the dealer took it.
+     */
+    public CompletableFuture<GameSnapshot> snapshot() {
+        return dealer.snapshot();
+    }
+
+    /**
+     * Continues a game from a snapshot, instead of dealing a new one. Called before the game starts.
+     *
+     * @param snapshot - the snapshot (of a game of the same size).
+     */
+    public void restore(GameSnapshot snapshot) {
+        dealer.restore(snapshot);
+    }
+
+    /**
+     * A key press of a human player (e.g. one that plays remotely).
+     *
+     * @param player - the id of the player.
+     * @param slot   - the slot of the key.
+     */
+    public void keyPressed(int player, int slot) {
+        players[player].keyPressed(slot);
+    }
+
+    private String name() {
+        return "game-" + id;
+    }
+
+    /**
+     * Terminates the game (and waits for its threads to finish).
+     */
+    public void terminate() {
+        terminated = true;
+        dealer.terminate();
+    }
+
+    /**
+     * @return - the results of the game so far.
+     */
+    public Result result() {
+        int[] scores = Arrays.stream(players).mapToInt(Player::score).toArray();
+        int maxScore = Arrays.stream(scores).max().orElse(0);
+        int[] winners = IntStream.range(0, scores.length).filter(i -> scores[i] == maxScore).toArray();
+        return new Result(id, scores, winners, !terminated, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Runs the given games at once and waits for all of them to end.
+     *
+     * @param games         - the games to run.
+     * @param timeoutMillis - the maximum number of milliseconds to wait for each game (0 to wait forever).
+     * @return - the results of the games (respectively).
+     */
+    public static List<Result> playAll(List<GameEngine> games, long timeoutMillis) throws InterruptedException {
+        games.forEach(GameEngine::start);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<Result> results = new ArrayList<>();
+        for (GameEngine game : games)
+            results.add(game.join(timeoutMillis == 0 ? 0 : Math.max(1, deadline - System.currentTimeMillis())));
+        return results;
+    }
+}
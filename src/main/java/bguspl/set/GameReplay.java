@@ -0,0 +1,168 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Plays back a game recorded by EventLog, on the calling thread. Each step applies one event to the state of the
+ * replayed game (the cards on the table, the tokens and the scores), and optionally to a user interface.
+ */
+public class GameReplay {
+
+    public final int featureSize;
+    public final int featureCount;
+    public final int rows;
+    public final int columns;
+    public final int players;
+
+    private final ByteBuffer events;
+    private final int[] slotToCard;
+    private final boolean[][] tokens;
+    private final int[] scores;
+    private final int[] counts = new int[EventLog.Type.values().length];
+
+    private EventLog.Type type;
+    private int a;
+    private int b;
+    private long nanos;
+
+    /**
+     * @param path - the event log to replay.
+     * @throws IOException - if the file cannot be read or is not an event log.
+     */
+    public GameReplay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            events = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (events.remaining() < 5 || events.getInt() != EventLog.MAGIC || events.get() != EventLog.VERSION)
+            throw new IOException(path + " is not an event log (or was written by another version)");
+        featureSize = (int) EventLog.getVarLong(events);
+        featureCount = (int) EventLog.getVarLong(events);
+        rows = (int) EventLog.getVarLong(events);
+        columns = (int) EventLog.getVarLong(events);
+        players = (int) EventLog.getVarLong(events);
+
+        slotToCard = new int[rows * columns];
+        Arrays.fill(slotToCard, -1);
+        tokens = new boolean[players][rows * columns];
+        scores = new int[players];
+    }
+
+    /**
+     * Applies the next event.
+     *
+     * @param ui - the user interface to show the event on (null for none).
+     * @return - false iff there are no more events.
+     */
+    public boolean step(UserInterface ui) {
+        if (!events.hasRemaining()) return false;
+        type = EventLog.Type.of(events.get());
+        nanos += EventLog.getVarLong(events);
+        a = (int) EventLog.getVarLong(events);
+        b = (int) EventLog.getVarLong(events);
+        ++counts[type.ordinal()];
+
+        switch (type) {
+            case CARD_PLACED:
+                slotToCard[b] = a;
+                if (ui != null) ui.placeCard(a, b);
+                break;
+            case CARD_REMOVED:
+                slotToCard[a] = -1;
+                for (boolean[] playerTokens : tokens)
+                    playerTokens[a] = false;
+                if (ui != null) {
+                    ui.removeTokens(a);
+                    ui.removeCard(a);
+                }
+                break;
+            case TOKEN_PLACED:
+                tokens[a][b] = true;
+                if (ui != null) ui.placeToken(a, b);
+                break;
+            case TOKEN_REMOVED:
+                tokens[a][b] = false;
+                if (ui != null) ui.removeToken(a, b);
+                break;
+            case SCORE:
+                scores[a] = b;
+                if (ui != null) ui.setScore(a, b);
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Applies all the remaining events.
+     *
+     * @param ui - the user interface to show the events on (null for none).
+     * @return - the number of events applied.
+     */
+    public int replay(UserInterface ui) {
+        int count = 0;
+        while (step(ui)) ++count;
+        return count;
+    }
+
+    /**
+     * @return - the type of the last event applied.
+     */
+    public EventLog.Type type() {
+        return type;
+    }
+
+    /**
+     * @return - the first argument of the last event applied.
+     */
+    public int a() {
+        return a;
+    }
+
+    /**
+     * @return - the second argument of the last event applied.
+     */
+    public int b() {
+        return b;
+    }
+
+    /**
+     * @return - the number of nanoseconds from the start of the game to the last event applied.
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * @return - the number of events of the given type applied so far.
+     */
+    public int count(EventLog.Type type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * @return - the card in the given slot, or -1 if the slot is empty.
+     */
+    public int cardAt(int slot) {
+        return slotToCard[slot];
+    }
+
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return tokens[player][slot];
+    }
+
+    /**
+     * @return - the score of the player.
+     */
+    public int score(int player) {
+        return scores[player];
+    }
+}
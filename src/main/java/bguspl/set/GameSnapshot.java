@@ -0,0 +1,196 @@
+package bguspl.set;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static bguspl.set.EventLog.getVarLong;
+import static bguspl.set.EventLog.putVarLong;
+
+/**
+ * The full state of a game at a consistent point (between two rounds of the dealer's checks, with no token being
+ * placed or removed), from which a new game continues exactly where the old one was.
+ * The binary format is a header (MAGIC, VERSION, and the card and table dimensions as varints, like the event log),
+ * followed by varints: the time left on the turn timer (zigzag, negative while counting the elapsed time), the deck
+ * in order, the card in each slot (plus one, 0 for an empty slot), and for each player its score, the time left of
+ * its freeze, whether its selection waits for a verdict and the cards of its selection. A typical game takes about
+ * 100 bytes.
+ */
+public final class GameSnapshot {
+
+    public static final int MAGIC = 0x53455453; // "SETS"
+    public static final byte VERSION = 1;
+
+    /**
+     * The dimensions of the game (see Config).
+     */
+    public final int featureSize, featureCount, rows, columns, players;
+
+    /**
+     * The number of nanoseconds until the turn timer runs out (see Timer.remainingNanos).
+     */
+    public final long timerNanos;
+
+    /**
+     * The cards in the deck, in the order they are dealt.
+     */
+    public final int[] deck;
+
+    /**
+     * The card in each slot (Table.EMPTY if none).
+     */
+    public final int[] slotToCard;
+
+    /**
+     * The score of each player.
+     */
+    public final int[] scores;
+
+    /**
+     * The number of milliseconds each player is still frozen for.
+     */
+    public final long[] freezeMillis;
+
+    /**
+     * True iff the selection of the player was submitted and did not get a verdict yet.
+     */
+    public final boolean[] pending;
+
+    /**
+     * The cards each player placed its tokens on.
+     */
+    public final int[][] selections;
+
+    public GameSnapshot(Config config, long timerNanos, int[] deck, int[] slotToCard, int[] scores,
+                        long[] freezeMillis, boolean[] pending, int[][] selections) {
+        this(config.featureSize, config.featureCount, config.rows, config.columns, config.players, timerNanos, deck,
+                slotToCard, scores, freezeMillis, pending, selections);
+    }
+
+    private GameSnapshot(int featureSize, int featureCount, int rows, int columns, int players, long timerNanos,
+                         int[] deck, int[] slotToCard, int[] scores, long[] freezeMillis, boolean[] pending,
+                         int[][] selections) {
+        this.featureSize = featureSize;
+        this.featureCount = featureCount;
+        this.rows = rows;
+        this.columns = columns;
+        this.players = players;
+        this.timerNanos = timerNanos;
+        this.deck = deck;
+        this.slotToCard = slotToCard;
+        this.scores = scores;
+        this.freezeMillis = freezeMillis;
+        this.pending = pending;
+        this.selections = selections;
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @return - the largest number of bytes a snapshot of a game with this configuration takes.
+     */
+    public static int maxSize(Config config) {
+        return maxSize(config.featureSize, config.deckSize, config.tableSize, config.players);
+    }
+
+    private static int maxSize(int featureSize, int deckSize, int tableSize, int players) {
+        return 4 + 1 + 5 * 5 + 10 + 5 + (deckSize + tableSize) * 5 + players * (5 + 10 + 1 + 5 + featureSize * 5);
+    }
+
+    /**
+     * Checks that the snapshot is of a game with the given configuration.
+     *
+     * @param config - the game configuration.
+     * @throws IllegalArgumentException - if the dimensions of the game are different.
+     */
+    public void check(Config config) {
+        if (featureSize != config.featureSize || featureCount != config.featureCount || rows != config.rows
+                || columns != config.columns || players != config.players)
+            throw new IllegalArgumentException("the snapshot is of a game of a different size");
+    }
+
+    /**
+     * Writes the snapshot.
+     *
+     * @param buffer - the buffer to write to (it must have maxSize bytes remaining).
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).put(VERSION);
+        for (int value : new int[]{featureSize, featureCount, rows, columns, players})
+            putVarLong(buffer, value);
+        putVarLong(buffer, (timerNanos << 1) ^ (timerNanos >> 63));
+        putVarLong(buffer, deck.length);
+        for (int card : deck)
+            putVarLong(buffer, card);
+        for (int card : slotToCard)
+            putVarLong(buffer, card + 1);
+        for (int player = 0; player < players; ++player) {
+            putVarLong(buffer, scores[player]);
+            putVarLong(buffer, Math.max(0, freezeMillis[player]));
+            buffer.put((byte) (pending[player] ? 1 : 0));
+            putVarLong(buffer, selections[player].length);
+            for (int card : selections[player])
+                putVarLong(buffer, card);
+        }
+    }
+
+    /**
+     * @return - the snapshot in its binary format.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(maxSize(featureSize, deck.length, slotToCard.length, players));
+        write(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param buffer - the buffer to read from.
+     * @return - the snapshot.
+     * @throws IllegalArgumentException - if the bytes are not a snapshot.
+     */
+    public static GameSnapshot read(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION)
+                throw new IllegalArgumentException("not a snapshot (or of another version)");
+            int featureSize = readInt(buffer), featureCount = readInt(buffer);
+            int rows = readInt(buffer), columns = readInt(buffer), players = readInt(buffer);
+            long zigzag = getVarLong(buffer);
+            long timerNanos = (zigzag >>> 1) ^ -(zigzag & 1);
+            int[] deck = new int[readLength(buffer)];
+            Arrays.setAll(deck, i -> readInt(buffer));
+            if ((long) rows * columns > buffer.remaining() || players > buffer.remaining())
+                throw new IllegalArgumentException("truncated snapshot");
+            int[] slotToCard = new int[rows * columns];
+            Arrays.setAll(slotToCard, i -> readInt(buffer) - 1);
+            int[] scores = new int[players];
+            long[] freezeMillis = new long[players];
+            boolean[] pending = new boolean[players];
+            int[][] selections = new int[players][];
+            for (int player = 0; player < players; ++player) {
+                scores[player] = readInt(buffer);
+                freezeMillis[player] = getVarLong(buffer);
+                pending[player] = buffer.get() != 0;
+                selections[player] = new int[readLength(buffer)];
+                Arrays.setAll(selections[player], i -> readInt(buffer));
+            }
+            return new GameSnapshot(featureSize, featureCount, rows, columns, players, timerNanos, deck, slotToCard,
+                    scores, freezeMillis, pending, selections);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated snapshot", e);
+        }
+    }
+
+    private static int readLength(ByteBuffer buffer) {
+        int length = readInt(buffer);
+        // every element takes at least a byte
+        if (length > buffer.remaining()) throw new IllegalArgumentException("truncated snapshot");
+        return length;
+    }
+
+    private static int readInt(ByteBuffer buffer) {
+        long value = getVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("bad snapshot value " + value);
+        return (int) value;
+    }
+}
@@ -0,0 +1,212 @@
+package bguspl.set;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements of a running game: named counters and timers (histograms of nanoseconds), collected only when the
+ * CollectStats setting is on (otherwise every method returns right away, and the game does not even read the clock).
+ * The game's own measurements are fields, so recording them is a single update. More can be added by name.
+ */
+public class GameStats {
+
+    /**
+     * True iff the measurements are collected.
+     */
+    public final boolean enabled;
+
+    // sorted by name, so every dump lists them in the same order
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> timers = new ConcurrentSkipListMap<>();
+
+    /**
+     * Nanoseconds from the key press that completed a player's selection until the player got the dealer's verdict.
+     */
+    public final Histogram keyToVerdictNanos = timer("keyToVerdictNanos");
+
+    /**
+     * Nanoseconds the dealer spent checking the submitted sets, per wake up that had any.
+     */
+    public final Histogram dealerLoopNanos = timer("dealerLoopNanos");
+
+    /**
+     * Nanoseconds the dealer spent on a single submitted set (including replacing the cards of a legal one).
+     */
+    public final Histogram checkSetNanos = timer("checkSetNanos");
+
+    /**
+     * Nanoseconds spent waiting for a slot lock that was held by another thread.
+     */
+    public final Histogram slotLockWaitNanos = timer("slotLockWaitNanos");
+
+    /**
+     * Nanoseconds per Util.findSets call. The sets left in the game are searched for once per game, so this times the
+     * search of the whole deck only; the sets of the table are timed by setIndexNanos.
+     */
+    public final Histogram findSetsNanos = timer("findSetsNanos");
+
+    /**
+     * Nanoseconds the table spent adding the sets made with a card placed on it to its index of legal sets.
+     */
+    public final Histogram setIndexNanos = timer("setIndexNanos");
+
+    private final LongAdder submissions = counter("submissions");
+    private final LongAdder legalSets = counter("verdicts.legal");
+    private final LongAdder illegalSets = counter("verdicts.illegal");
+    private final LongAdder verdicts = counter("verdicts.received");
+    private final LongAdder timerReshuffles = counter("reshuffles.timer");
+    private final LongAdder noSetsReshuffles = counter("reshuffles.noSets");
+    private final LongAdder[] frozenNanos;
+
+    /**
+     * @param enabled - true iff the measurements should be collected.
+     * @param players - the number of players in the game.
+     */
+    public GameStats(boolean enabled, int players) {
+        this.enabled = enabled;
+        frozenNanos = new LongAdder[players];
+        for (int i = 0; i < players; ++i)
+            frozenNanos[i] = counter("player." + i + ".frozenNanos");
+    }
+
+    /**
+     * @param name - the name of the counter.
+     * @return - the counter with the given name (created if there is none).
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * @param name - the name of the timer.
+     * @return - the timer with the given name (created if there is none).
+     */
+    public Histogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * @return - all the counters by name.
+     */
+    public Map<String, LongAdder> counters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * @return - all the timers by name.
+     */
+    public Map<String, Histogram> timers() {
+        return Collections.unmodifiableMap(timers);
+    }
+
+    /**
+     * @return - the current time in nanoseconds, or 0 if the measurements are not collected.
+     */
+    public long now() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Called by the dealer when a player submits its cards.
+     */
+    public void submitted() {
+        if (enabled) submissions.increment();
+    }
+
+    /**
+     * Called by the dealer after checking a submitted set.
+     *
+     * @param legal      - true iff the set was legal.
+     * @param startNanos - the time (now()) the dealer started checking it.
+     */
+    public void checked(boolean legal, long startNanos) {
+        if (!enabled) return;
+        (legal ? legalSets : illegalSets).increment();
+        checkSetNanos.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called by a player when it receives the dealer's verdict on its set.
+     *
+     * @param pressedNanos - the time (now()) of the key press that completed the set, 0 if unknown.
+     */
+    public void verdict(long pressedNanos) {
+        if (!enabled) return;
+        verdicts.increment();
+        if (pressedNanos != 0) keyToVerdictNanos.record(System.nanoTime() - pressedNanos);
+    }
+
+    /**
+     * Called by the dealer after checking submitted sets.
+     *
+     * @param startNanos - the time (now()) the dealer started checking.
+     */
+    public void dealerLoop(long startNanos) {
+        if (enabled) dealerLoopNanos.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called after waiting for a slot lock.
+     *
+     * @param startNanos - the time (now()) the wait started.
+     */
+    public void slotLockWaited(long startNanos) {
+        if (enabled) slotLockWaitNanos.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called by a player when it is no longer frozen.
+     *
+     * @param player     - the id of the player.
+     * @param startNanos - the time (now()) the freeze started.
+     */
+    public void frozen(int player, long startNanos) {
+        if (enabled) frozenNanos[player].add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called by the dealer when it returns the cards to the deck.
+     *
+     * @param byTimer - true iff the turn timed out, false iff there was no set on the table.
+     */
+    public void reshuffled(boolean byTimer) {
+        if (enabled) (byTimer ? timerReshuffles : noSetsReshuffles).increment();
+    }
+
+    /**
+     * Called after a Util.findSets call.
+     *
+     * @param startNanos - the time (now()) the call started.
+     */
+    public void foundSets(long startNanos) {
+        if (enabled) findSetsNanos.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called by the table after adding the sets of a card it placed to its index.
+     *
+     * @param startNanos - the time (now()) the update started.
+     */
+    public void indexedSets(long startNanos) {
+        if (enabled) setIndexNanos.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return - the number of verdicts the players received so far.
+     */
+    public long verdicts() {
+        return verdicts.sum();
+    }
+
+    /**
+     * @return - all the counters and timers, one per line (timers in milliseconds).
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        counters.forEach((name, counter) -> sb.append(name).append(' ').append(counter.sum()).append('\n'));
+        timers.forEach((name, timer) -> sb.append(name).append(" (ms) ").append(timer.summary(1e6)).append('\n'));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values (e.g. latencies in nanoseconds), in the spirit of HdrHistogram: the values
+ * are counted in log-linear buckets, so any value is kept with a relative error below 1/64 while the whole range of
+ * long values fits in a few thousand buckets. Recording is lock free, so any number of threads can record at once.
+ */
+public class Histogram {
+
+    /**
+     * Values below SUB_BUCKETS have a bucket each. Above it every power of two is split into HALF buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * HALF + HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value (negative values are recorded as 0).
+     *
+     * @param value - the value to record.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) ;
+    }
+
+    /**
+     * Adds all the values recorded by another histogram to this one.
+     *
+     * @param other - the histogram to add.
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; ++i) {
+            long n = other.counts.get(i);
+            if (n != 0) counts.addAndGet(i, n);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long value = other.max.get();
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) ;
+    }
+
+    /**
+     * @return - the number of values recorded.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return - the largest value recorded (0 if none).
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return - the average of the values recorded (0 if none).
+     */
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Finds the value that the given percentage of the recorded values are not larger than.
+     *
+     * @param percentile - the percentage (between 0 and 100).
+     * @return - the value at the percentile, accurate up to the bucket it falls in (0 if nothing was recorded).
+     */
+    public long valueAtPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @param scale - the values are divided by this number (e.g. 1e6 to show nanoseconds as milliseconds).
+     * @return - a one line summary of the histogram.
+     */
+    public String summary(double scale) {
+        return String.format("count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f", count(),
+                mean() / scale, valueAtPercentile(50) / scale, valueAtPercentile(90) / scale,
+                valueAtPercentile(99) / scale, valueAtPercentile(99.9) / scale, max() / scale);
+    }
+
+    @Override
+    public String toString() {
+        return summary(1);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / HALF - 1;
+        long sub = bucket - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,118 @@
+package bguspl.set;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Registers the measurements of a game as an MBean (bguspl.set:type=GameStats,name=the game's name) while the game
+ * runs. Each counter is an attribute, and each timer has count, mean, p50, p99, p99.9 and max attributes (in
+ * nanoseconds).
+ */
+public class JmxMetricsExporter implements MetricsExporter {
+
+    private static final String[] TIMER_ATTRIBUTES = {"count", "mean", "p50", "p99", "p99.9", "max"};
+
+    private final Logger logger;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    public JmxMetricsExporter(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void open(String game, GameStats stats) {
+        try {
+            server.registerMBean(new StatsMBean(stats), name(game));
+        } catch (JMException e) {
+            logger.severe("warning: cannot register the stats of " + game + " with JMX: " + e);
+        }
+    }
+
+    @Override
+    public void close(String game, GameStats stats) {
+        try {
+            server.unregisterMBean(name(game));
+        } catch (JMException ignored) {}
+    }
+
+    private static ObjectName name(String game) throws JMException {
+        return new ObjectName("bguspl.set:type=GameStats,name=" + ObjectName.quote(game));
+    }
+
+    private static class StatsMBean implements DynamicMBean {
+
+        private final GameStats stats;
+
+        StatsMBean(GameStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (stats.counters().containsKey(attribute))
+                return stats.counters().get(attribute).sum();
+
+            int split = attribute.lastIndexOf(':');
+            Histogram timer = split < 0 ? null : stats.timers().get(attribute.substring(0, split));
+            if (timer != null)
+                switch (attribute.substring(split + 1)) {
+                    case "count": return timer.count();
+                    case "mean": return (long) timer.mean();
+                    case "p50": return timer.valueAtPercentile(50);
+                    case "p99": return timer.valueAtPercentile(99);
+                    case "p99.9": return timer.valueAtPercentile(99.9);
+                    case "max": return timer.max();
+                }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException ignored) {}
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("the stats are read only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String counter : stats.counters().keySet())
+                attributes.add(new MBeanAttributeInfo(counter, "long", counter, true, false, false));
+            for (String timer : stats.timers().keySet())
+                for (String attribute : TIMER_ATTRIBUTES)
+                    attributes.add(new MBeanAttributeInfo(timer + ":" + attribute, "long", timer + " " + attribute,
+                            true, false, false));
+            return new MBeanInfo(StatsMBean.class.getName(), "the measurements of a game",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
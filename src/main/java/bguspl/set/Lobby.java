@@ -0,0 +1,424 @@
+package bguspl.set;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Hosts many games (tables) at once, on a fixed pool of shards: threads that run the dealers of their tables, one
+ * table at a time each (one shard per core by default). Every table is a separate GameEngine, so the tables share no
+ * state, and each shard keeps its own queue of tables waiting to start and its own measurements. The shards meet only
+ * at the lobby's lock, which is taken to open a table, to seat a player and when a table ends.
+ * A new table is queued on the least loaded shard. When a table ends (its dealer announced the winners and returned)
+ * its shard starts its next table, or takes the last one of the shard with the most tables waiting, so no shard is
+ * idle while tables are waiting elsewhere.
+ * Human players are routed to a table with a free seat (the fullest table first, so tables fill up before others get
+ * players), and a new table is opened when every seat is taken.
+ */
+public class Lobby implements AutoCloseable {
+
+    /**
+     * A table of the lobby.
+     */
+    private static class Hosted {
+
+        final GameEngine game;
+        final CompletableFuture<GameEngine.Result> result = new CompletableFuture<>();
+
+        /**
+         * The human players that are seated (by player id, only the first HumanPlayers are seats).
+         */
+        final boolean[] seated;
+
+        Shard shard;
+        boolean running;
+
+        Hosted(GameEngine game) {
+            this.game = game;
+            seated = new boolean[game.env.config.humanPlayers];
+        }
+
+        int freeSeats() {
+            int free = 0;
+            for (boolean taken : seated)
+                if (!taken) ++free;
+            return free;
+        }
+    }
+
+    /**
+     * A seat of a human player at a table of the lobby.
+     */
+    public class Seat {
+
+        private final Hosted table;
+
+        /**
+         * The id of the player in the game of the table.
+         */
+        public final int player;
+
+        private Seat(Hosted table, int player) {
+            this.table = table;
+            this.player = player;
+        }
+
+        /**
+         * @return - the game of the table.
+         */
+        public GameEngine game() {
+            return table.game;
+        }
+
+        /**
+         * @return - the results of the game, once it ends.
+         */
+        public CompletableFuture<GameEngine.Result> result() {
+            return table.result;
+        }
+
+        /**
+         * A key press of the player.
+         *
+         * @param slot - the slot of the key.
+         */
+        public void press(int slot) {
+            table.game.keyPressed(player, slot);
+        }
+
+        /**
+         * Frees the seat (the player keeps its tokens and score).
+         */
+        public void leave() {
+            synchronized (Lobby.this) {
+                table.seated[player] = false;
+            }
+        }
+    }
+
+    /**
+     * Runs tables one after another, on a thread of the pool.
+     */
+    private class Shard implements Runnable {
+
+        final int id;
+
+        /**
+         * The tables waiting to start (guarded by the lobby).
+         */
+        final Deque<Hosted> waiting = new ArrayDeque<>();
+
+        /**
+         * The table that runs (guarded by the lobby, null if none).
+         */
+        Hosted running;
+
+        // written by the thread of the shard only
+        volatile long tables;
+        volatile long sets;
+        volatile long busyNanos;
+        volatile long taken;
+
+        Shard(int id) {
+            this.id = id;
+        }
+
+        int load() {
+            return waiting.size() + (running == null ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName("shard-" + id);
+            Hosted table;
+            while ((table = next(this)) != null) {
+                long start = System.nanoTime();
+                GameEngine.Result result = null;
+                Throwable error = null;
+                try {
+                    result = table.game.run();
+                    sets += IntStream.of(result.scores).sum();
+                } catch (RuntimeException | Error e) {
+                    error = e;
+                }
+                busyNanos += System.nanoTime() - start;
+                ++tables;
+                ended(table);
+                // the measurements include the table by the time its results are known
+                if (error == null) table.result.complete(result);
+                else table.result.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * The measurements of the lobby, summed over its shards.
+     */
+    public static class Metrics {
+
+        /**
+         * The tables that ended, the sets collected in them, the nanoseconds spent running them and the tables taken
+         * from other shards, per shard.
+         */
+        public final long[] tables, sets, busyNanos, taken;
+
+        /**
+         * The tables waiting to start and the tables that run.
+         */
+        public final int waiting, running;
+
+        /**
+         * Nanoseconds since the lobby was created.
+         */
+        public final long elapsedNanos;
+
+        Metrics(List<Shard> shards, int waiting, int running, long elapsedNanos) {
+            tables = shards.stream().mapToLong(shard -> shard.tables).toArray();
+            sets = shards.stream().mapToLong(shard -> shard.sets).toArray();
+            busyNanos = shards.stream().mapToLong(shard -> shard.busyNanos).toArray();
+            taken = shards.stream().mapToLong(shard -> shard.taken).toArray();
+            this.waiting = waiting;
+            this.running = running;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return - the number of tables that ended.
+         */
+        public long tables() {
+            return Arrays.stream(tables).sum();
+        }
+
+        /**
+         * @return - the number of sets collected in the tables that ended.
+         */
+        public long sets() {
+            return Arrays.stream(sets).sum();
+        }
+
+        /**
+         * @return - the tables that ended per second.
+         */
+        public double tablesPerSecond() {
+            return tables() * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * @return - the sets collected per second (in the tables that ended).
+         */
+        public double setsPerSecond() {
+            return sets() * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * @return - the part of the time the shards spent running tables (between 0 and 1).
+         */
+        public double utilization() {
+            return Arrays.stream(busyNanos).sum() / ((double) Math.max(1, elapsedNanos) * busyNanos.length);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tables ended (%.2f/s), %d sets (%.1f/s), %d running, %d waiting, "
+                            + "%.0f%% utilization, tables per shard %s, taken from other shards %s",
+                    tables(), tablesPerSecond(), sets(), setsPerSecond(), running, waiting, utilization() * 100,
+                    Arrays.toString(tables), Arrays.toString(taken));
+        }
+    }
+
+    private final Supplier<GameEngine> tables;
+    private final List<Shard> shards = new ArrayList<>();
+    private final List<Hosted> open = new ArrayList<>();
+    private final ExecutorService pool;
+    private final long createdNanos = System.nanoTime();
+    private boolean closed;
+
+    /**
+     * A game that seat created to count its seats, and did not host as it has none (the next table opened hosts it).
+     */
+    private GameEngine spare;
+
+    /**
+     * Creates a lobby with one shard per core.
+     *
+     * @param tables - creates the game of a new table.
+     */
+    public Lobby(Supplier<GameEngine> tables) {
+        this(Runtime.getRuntime().availableProcessors(), tables);
+    }
+
+    /**
+     * @param shards - the number of shards (the number of tables that run at once).
+     * @param tables - creates the game of a new table.
+     */
+    public Lobby(int shards, Supplier<GameEngine> tables) {
+        if (shards < 1) throw new IllegalArgumentException("a lobby needs at least one shard");
+        this.tables = tables;
+        pool = Executors.newFixedThreadPool(shards);
+        for (int i = 0; i < shards; ++i)
+            this.shards.add(new Shard(i));
+        this.shards.forEach(pool::execute);
+    }
+
+    /**
+     * @return - the number of shards.
+     */
+    public int shards() {
+        return shards.size();
+    }
+
+    /**
+     * Opens a new table, which starts as soon as a shard is free.
+     *
+     * @return - the results of its game, once it ends.
+     */
+    public synchronized CompletableFuture<GameEngine.Result> open() {
+        return host(nextGame()).result;
+    }
+
+    private GameEngine nextGame() {
+        if (closed) throw new IllegalStateException("the lobby is closed");
+        GameEngine game = spare != null ? spare : tables.get();
+        spare = null;
+        return game;
+    }
+
+    private Hosted host(GameEngine game) {
+        Hosted table = new Hosted(game);
+        Shard shard = shards.get(0);
+        for (Shard other : shards)
+            if (other.load() < shard.load()) shard = other;
+        table.shard = shard;
+        shard.waiting.addLast(table);
+        open.add(table);
+        notifyAll();
+        return table;
+    }
+
+    /**
+     * Seats a human player at a table with a free seat, opening a new table if there is none.
+     *
+     * @return - the seat.
+     * @throws IllegalStateException - if the tables have no human players, or the lobby is closed.
+     */
+    public synchronized Seat seat() {
+        Hosted best = null;
+        for (Hosted table : open) {
+            int free = table.freeSeats();
+            if (free == 0) continue;
+            // the fullest table first, and of those a table that runs already
+            if (best == null || free < best.freeSeats() || (free == best.freeSeats() && table.running && !best.running))
+                best = table;
+        }
+        if (best == null) {
+            GameEngine game = nextGame();
+            if (game.env.config.humanPlayers == 0) {
+                spare = game;
+                throw new IllegalStateException("the tables have no human players");
+            }
+            best = host(game);
+        }
+        int player = 0;
+        while (best.seated[player]) ++player;
+        best.seated[player] = true;
+        return new Seat(best, player);
+    }
+
+    /**
+     * @return - the next table for a shard to run (null once the lobby is closed and no table is waiting).
+     */
+    private synchronized Hosted next(Shard shard) {
+        while (true) {
+            Hosted table = shard.waiting.pollFirst();
+            if (table == null) {
+                // take the table that would wait the longest elsewhere
+                Shard busiest = shard;
+                for (Shard other : shards)
+                    if (other.waiting.size() > busiest.waiting.size()) busiest = other;
+                table = busiest.waiting.pollLast();
+                if (table != null) {
+                    table.shard = shard;
+                    ++shard.taken;
+                }
+            }
+            if (table != null) {
+                table.running = true;
+                shard.running = table;
+                return table;
+            }
+            if (closed) return null;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+
+    private synchronized void ended(Hosted table) {
+        table.shard.running = null;
+        open.remove(table);
+    }
+
+    /**
+     * @return - the measurements of the lobby so far.
+     */
+    public synchronized Metrics metrics() {
+        int waiting = shards.stream().mapToInt(shard -> shard.waiting.size()).sum();
+        int running = (int) shards.stream().filter(shard -> shard.running != null).count();
+        return new Metrics(shards, waiting, running, System.nanoTime() - createdNanos);
+    }
+
+    /**
+     * Terminates all the tables (the waiting ones end as soon as they start), and waits for the shards to stop (or
+     * until the calling thread is interrupted, which leaves it interrupted).
+     */
+    @Override
+    public void close() {
+        List<Hosted> tables;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            tables = new ArrayList<>(open);
+        }
+        tables.forEach(table -> table.game.terminate());
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+                tables.forEach(table -> table.game.terminate());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Plays headless games (computer players only) in a lobby, and prints its measurements.
+     *
+     * @param args - the number of tables, the number of shards and the execution mode of the players (default 16,
+     *             the number of cores and Virtual). The players are random computer players that are never frozen.
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Properties properties = new Properties();
+        properties.setProperty("ExecutionMode", args.length > 2 ? args[2] : "Virtual");
+        Config config = GameEngine.fastHeadlessConfig(properties);
+
+        try (Lobby lobby = new Lobby(shards, () -> new GameEngine(config))) {
+            List<CompletableFuture<GameEngine.Result>> results = new ArrayList<>();
+            for (int i = 0; i < count; ++i)
+                results.add(lobby.open());
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            System.out.println(lobby.metrics());
+        }
+    }
+}
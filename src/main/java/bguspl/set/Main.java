@@ -1,11 +1,10 @@
 package bguspl.set;
 
-import bguspl.set.ex.Dealer;
-import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
-
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -17,7 +16,7 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
+    private static GameEngine game;
     private static Thread mainThread;
 
     private static boolean xButtonPressed = false;
@@ -26,7 +25,7 @@ public class Main {
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
+        if (game != null) game.terminate();
         mainThread.join();
     }
 
@@ -40,78 +39,149 @@ public class Main {
         mainThread = Thread.currentThread();
 
         // create the game environment objects
-        logger = initLogger();
+        MemoryLogHandler startupLog = new MemoryLogHandler(1024);
+        logger = initLogger(startupLog);
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
-
-        Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
-        }
-        ui = new UserInterfaceDecorator(logger, util, ui);
-
-        Env env = new Env(logger, config, ui, util);
-
-        // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        initLogOutput(logger, config, startupLog);
+
+        // create the game environment and entities
+        game = new GameEngine(logger, config, (util, players) -> {
+            UserInterface ui = null;
+            try {
+                // the game threads hand the updates to the swing thread instead of waiting for it
+                ui = new UserInterfaceDispatcher(new UserInterfaceSwing(logger, config, players), config.players);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+                logger.severe("will try to run without user interface");
+                if (config.humanPlayers > 0)
+                    logger.severe("warning: running with human players with no user interface");
+            }
+            return new UserInterfaceDecorator(logger, util, ui);
+        });
+        Env env = game.env;
+        Checkpoint checkpoint = openCheckpoint(config);
 
         // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        game.start();
+        if (checkpoint != null) checkpoint.start(config.checkpointMillis);
 
         try {
             // shutdown stuff
-            dealerThread.joinWithLog();
+            GameEngine.Result result = game.join(0);
+            if (checkpoint != null) closeCheckpoint(checkpoint, config, result.completed);
+            checkpoint = null;
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
+            if (checkpoint != null) closeCheckpoint(checkpoint, config, false);
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
-            for (Handler h : logger.getHandlers()) h.flush();
+            env.events.close();
+            for (Handler h : logger.getHandlers()) h.close();
         }
     }
 
-    private static Logger initLogger() {
+    /**
+     * Continues the game from the configured checkpoint file (if it has a snapshot), and opens the file to save the
+     * game to.
+     *
+     * @return - the checkpoint of the game, or null if there is none.
+     */
+    private static Checkpoint openCheckpoint(Config config) {
+        if (config.checkpointFile.isEmpty()) return null;
+        Path file = Paths.get(config.checkpointFile);
+        try {
+            GameSnapshot snapshot = Checkpoint.load(file);
+            if (snapshot != null) {
+                game.restore(snapshot);
+                logger.info("continuing the game saved in " + file);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.severe("warning: cannot continue the game saved in " + file + ", starting a new one: " + e);
+        }
+        try {
+            return new Checkpoint(game, file);
+        } catch (IOException e) {
+            logger.severe("warning: cannot save the game to " + file + ": " + e);
+            return null;
+        }
+    }
 
-        //just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+    /**
+     * Stops saving the game, and deletes the saved game if it ended (so the next game is a new one).
+     */
+    private static void closeCheckpoint(Checkpoint checkpoint, Config config, boolean ended) {
         try {
-            //noinspection ResultOfMethodCallIgnored
-            new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            checkpoint.close();
+            if (ended) Files.deleteIfExists(Paths.get(config.checkpointFile));
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.severe("warning: cannot close the checkpoint file " + config.checkpointFile + ": " + e);
         }
+    }
+
+    /**
+     * Creates the game's logger. Until the configuration is read the records are only kept in memory.
+     *
+     * @param startupLog - keeps the records logged while reading the configuration.
+     */
+    private static Logger initLogger(MemoryLogHandler startupLog) {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(startupLog);
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
     }
 
+    /**
+     * Sends the log records to the configured output (see Config.logOutput), starting with the ones kept in memory
+     * while reading the configuration.
+     *
+     * @param startupLog - the records logged so far.
+     */
+    private static void initLogOutput(Logger logger, Config config, MemoryLogHandler startupLog) {
+
+        logger.removeHandler(startupLog);
+        Handler handler;
+        switch (config.logOutput) {
+            case FILE:
+                //just to make our log file nicer :)
+                SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
+                try {
+                    //noinspection ResultOfMethodCallIgnored
+                    new File("./logs/").mkdirs();
+                    FileHandler file = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+                    handler = new AsyncLogHandler(file, config.logBufferSize);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                break;
+            case MEMORY:
+                handler = new MemoryLogHandler(config.logBufferSize);
+                break;
+            default:
+                logger.setLevel(Level.OFF);
+                return;
+        }
+
+        logger.addHandler(handler);
+        setLoggerLevelAndFormat(logger, config.logLevel, config.logFormat);
+        startupLog.records().forEach(handler::publish);
+    }
+
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+            // not synchronized: an AsyncLogHandler formats on its writer thread only, and the format is immutable
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
+                        lr.getLevel().getLocalizedName(), formatMessage(lr)
                 );
             }
         }));
@@ -0,0 +1,56 @@
+package bguspl.set;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Times the calls to findSets of another Util (the other calls are passed through as they are).
+ */
+class MeasuredUtil implements Util {
+
+    private final Util util;
+    private final GameStats stats;
+
+    MeasuredUtil(Util util, GameStats stats) {
+        this.util = util;
+        this.stats = stats;
+    }
+
+    @Override
+    public int[] cardToFeatures(int card) {
+        return util.cardToFeatures(card);
+    }
+
+    @Override
+    public int[][] cardsToFeatures(int[] cards) {
+        return util.cardsToFeatures(cards);
+    }
+
+    @Override
+    public boolean testSet(int[] cards) {
+        return util.testSet(cards);
+    }
+
+    @Override
+    public int completeSet(int[] cards) {
+        return util.completeSet(cards);
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        long start = stats.now();
+        List<int[]> sets = util.findSets(deck, count);
+        stats.foundSets(start);
+        return sets;
+    }
+
+    @Override
+    public Stream<int[]> streamSets(List<Integer> deck) {
+        return util.streamSets(deck);
+    }
+
+    @Override
+    public void spin() {
+        util.spin();
+    }
+}
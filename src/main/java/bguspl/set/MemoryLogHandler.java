@@ -0,0 +1,58 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Keeps the latest log records in memory (a ring buffer that overwrites the oldest ones) and never formats or writes
+ * them, e.g. for benchmarks that should not measure I/O but should still pay for creating the records.
+ */
+public class MemoryLogHandler extends Handler {
+
+    private final LogRecord[] ring;
+    private long published;
+
+    /**
+     * @param capacity - the number of records to keep.
+     */
+    public MemoryLogHandler(int capacity) {
+        ring = new LogRecord[Math.max(1, capacity)];
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+        synchronized (ring) {
+            ring[(int) (published++ % ring.length)] = record;
+        }
+    }
+
+    /**
+     * @return - the number of records published so far (including the ones that were overwritten).
+     */
+    public long published() {
+        synchronized (ring) {
+            return published;
+        }
+    }
+
+    /**
+     * @return - the records that are kept, oldest first.
+     */
+    public List<LogRecord> records() {
+        synchronized (ring) {
+            List<LogRecord> records = new ArrayList<>();
+            for (long i = Math.max(0, published - ring.length); i < published; ++i)
+                records.add(ring[(int) (i % ring.length)]);
+            return records;
+        }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,24 @@
+package bguspl.set;
+
+/**
+ * Publishes the measurements of a game (see GameStats). The exporters of a game are chosen by the StatsExporters
+ * setting.
+ */
+public interface MetricsExporter {
+
+    /**
+     * Called when the game starts.
+     *
+     * @param game  - the name of the game.
+     * @param stats - the measurements of the game.
+     */
+    void open(String game, GameStats stats);
+
+    /**
+     * Called once the game ended.
+     *
+     * @param game  - the name of the game.
+     * @param stats - the measurements of the game.
+     */
+    void close(String game, GameStats stats);
+}
@@ -0,0 +1,78 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A user interface that draws nothing and only records the game results (for headless games).
+ */
+public class RecordingUserInterface implements UserInterface {
+
+    /**
+     * The last score set for each player.
+     */
+    private final AtomicIntegerArray scores;
+
+    /**
+     * The announced winners (null until announced).
+     */
+    private volatile int[] winners;
+
+    public RecordingUserInterface(Config config) {
+        this.scores = new AtomicIntegerArray(config.players);
+    }
+
+    /**
+     * @param player - the player id.
+     * @return - the last score set for the player.
+     */
+    public int score(int player) {
+        return scores.get(player);
+    }
+
+    /**
+     * @return - the ids of the announced winners, or null if the winners were not announced yet.
+     */
+    public int[] winners() {
+        return winners;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {}
+
+    @Override
+    public void removeCard(int slot) {}
+
+    @Override
+    public void placeToken(int player, int slot) {}
+
+    @Override
+    public void removeTokens() {}
+
+    @Override
+    public void removeTokens(int slot) {}
+
+    @Override
+    public void removeToken(int player, int slot) {}
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {}
+
+    @Override
+    public void setElapsed(long millies) {}
+
+    @Override
+    public void setFreeze(int player, long millies) {}
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        winners = players.clone();
+    }
+
+    @Override
+    public void dispose() {}
+}
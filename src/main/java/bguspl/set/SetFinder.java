@@ -0,0 +1,299 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds legal sets in a collection of cards using the precomputed card features.
+ * For featureSize >= 3 the last card of a set is determined by the others (see CompletionTable), so only the
+ * combinations of featureSize - 1 cards are walked, and the card that completes each is looked up in a card presence
+ * bitset (a pair scan for featureSize == 3). For featureSize == 2 every combination of featureSize cards is checked.
+ * The combinations are walked by a Sets spliterator, which splits them by their smallest card, so large searches run
+ * on a fork/join pool and stop as soon as enough sets are found, and callers can stream the sets lazily.
+ */
+final class SetFinder {
+
+    /**
+     * The number of combinations to check above which a search runs in parallel.
+     */
+    static final long PARALLEL_COMBINATIONS = 1 << 16;
+
+    /**
+     * The number of combinations checked by a single task of a parallel search.
+     */
+    private static final long TASK_COMBINATIONS = 1 << 12;
+
+    private final FeatureTable features;
+    private final CompletionTable completions;
+
+    /**
+     * Runs the parallel searches (null to search sequentially only).
+     */
+    private final ForkJoinPool pool;
+
+    SetFinder(FeatureTable features, CompletionTable completions, ForkJoinPool pool) {
+        this.features = features;
+        this.completions = completions;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds up to count sets in the given collection of cards (see Util::findSets). Which sets are found when there
+     * are more than count of them may vary between parallel searches; all the sets are always found in order.
+     */
+    List<int[]> findSets(List<Integer> deck, int count) {
+        Sets sets = new Sets(sorted(deck));
+        if (pool != null && sets.estimateSize() >= PARALLEL_COMBINATIONS) {
+            Search search = new Search(sets, count, new AtomicInteger());
+            pool.invoke(search);
+            LinkedList<int[]> found = new LinkedList<>();
+            search.collect(found);
+            return found;
+        }
+
+        LinkedList<int[]> found = new LinkedList<>();
+        while (found.size() < count && sets.tryAdvance(found::add)) ;
+        return found;
+    }
+
+    /**
+     * Streams the sets in the given collection of cards lazily (see Util::streamSets).
+     */
+    Stream<int[]> streamSets(List<Integer> deck) {
+        return StreamSupport.stream(new Sets(sorted(deck)), false);
+    }
+
+    private static int[] sorted(List<Integer> deck) {
+        int[] cards = new int[deck.size()];
+        int n = 0;
+        for (int card : deck)
+            cards[n++] = card;
+        Arrays.sort(cards);
+        return cards;
+    }
+
+    /**
+     * @return - the number of combinations of r out of n things (as a double, it may be huge).
+     */
+    private static double choose(int n, int r) {
+        if (r < 0 || n < r) return 0;
+        double combinations = 1;
+        for (int i = 0; i < r; ++i)
+            combinations = combinations * (n - i) / (i + 1);
+        return combinations;
+    }
+
+    /**
+     * The sets whose smallest card is one of a range of the (sorted) cards, in lexicographic order. A spliterator is
+     * split in two ranges of about the same number of combinations, before it starts walking them.
+     */
+    private class Sets implements Spliterator<int[]> {
+
+        private final int[] cards;
+        private final long[] present;
+
+        /**
+         * True iff the last card of each set is looked up rather than chosen.
+         */
+        private final boolean complete;
+
+        /**
+         * The number of cards chosen, and the number of cards they are chosen from (the last card is never chosen
+         * when it is looked up, as it has no larger card to complete it).
+         */
+        private final int r, n;
+
+        /**
+         * The range of the index of the smallest card.
+         */
+        private int from, to;
+
+        /**
+         * The indices of the next combination to check (null until the walk starts).
+         */
+        private int[] combination;
+        private final int[] chosen;
+
+        Sets(int[] cards) {
+            this.cards = cards;
+            present = new long[(features.deckSize + 63) >>> 6];
+            for (int card : cards)
+                present[card >>> 6] |= 1L << card;
+            complete = features.featureSize >= 3;
+            r = complete ? features.featureSize - 1 : features.featureSize;
+            n = complete ? cards.length - 1 : cards.length;
+            from = 0;
+            to = Math.max(0, n - r + 1);
+            chosen = new int[r];
+        }
+
+        private Sets(Sets whole, int from, int to) {
+            cards = whole.cards;
+            present = whole.present;
+            complete = whole.complete;
+            r = whole.r;
+            n = whole.n;
+            this.from = from;
+            this.to = to;
+            chosen = new int[r];
+        }
+
+        /**
+         * @return - the number of combinations whose smallest card has an index of first or more.
+         */
+        private double combinationsFrom(int first) {
+            return choose(n - first, r);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            if (combination == null) {
+                if (from >= to) return false;
+                combination = new int[r];
+                for (int i = 0; i < r; ++i)
+                    combination[i] = from + i;
+            }
+            if (complete && r == 2) return tryAdvancePair(action);
+
+            while (combination[0] < to) {
+                for (int i = 0; i < r; ++i)
+                    chosen[i] = cards[combination[i]];
+                int[] set = null;
+                if (complete) {
+                    // every set is found exactly once, from all its cards but the largest
+                    int last = completions.complete(chosen);
+                    if (last > chosen[r - 1] && (present[last >>> 6] & 1L << last) != 0) {
+                        set = Arrays.copyOf(chosen, r + 1);
+                        set[r] = last;
+                    }
+                } else if (features.isSet(chosen)) set = chosen.clone();
+
+                // generate next combination in lexicographic order
+                int t = r - 1;
+                while (t != 0 && combination[t] == n - r + t) --t;
+                combination[t]++;
+                for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+
+                if (set != null) {
+                    action.accept(set);
+                    return true;
+                }
+            }
+            from = to;
+            return false;
+        }
+
+        /**
+         * The same as tryAdvance, for featureSize == 3: a scan of the pairs, with the third card of each pair read from
+         * the completion table.
+         */
+        private boolean tryAdvancePair(Consumer<? super int[]> action) {
+            int i = combination[0], j = combination[1];
+            while (i < to) {
+                int a = cards[i], b = cards[j];
+                int c = completions.third(a, b);
+                if (++j == n) j = ++i + 1;
+                if (c > b && (present[c >>> 6] & 1L << c) != 0) {
+                    combination[0] = i;
+                    combination[1] = j;
+                    action.accept(new int[]{a, b, c});
+                    return true;
+                }
+            }
+            combination[0] = i;
+            from = to;
+            return false;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            if (combination != null || to - from < 2) return null;
+            // the smaller the first card, the more combinations there are after it, so the ranges are not halves
+            double half = (combinationsFrom(from) + combinationsFrom(to)) / 2;
+            int mid = from + 1;
+            while (mid < to - 1 && combinationsFrom(mid) > half) ++mid;
+            Sets prefix = new Sets(this, from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            if (from >= to) return 0;
+            double combinations = combinationsFrom(combination == null ? from : combination[0]) - combinationsFrom(to);
+            return (long) Math.min(combinations, Long.MAX_VALUE);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Finds the sets of a spliterator, splitting it into tasks of about TASK_COMBINATIONS combinations. The tasks stop
+     * once count sets are found by all of them together. The sets stay with the tasks that found them, and are joined
+     * in order once, at the end (see collect).
+     */
+    private static class Search extends RecursiveAction {
+
+        // a task is never serialized, it lives only for the search
+        private static final long serialVersionUID = 1L;
+
+        private final transient Spliterator<int[]> sets;
+        private final int count;
+        private final AtomicInteger found;
+
+        /**
+         * The two halves the task was split into (null if it was not).
+         */
+        private Search prefix, rest;
+
+        /**
+         * The sets found by the task itself.
+         */
+        private final transient List<int[]> result = new ArrayList<>();
+
+        Search(Spliterator<int[]> sets, int count, AtomicInteger found) {
+            this.sets = sets;
+            this.count = count;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get() >= count) return;
+            Spliterator<int[]> split;
+            if (sets.estimateSize() > TASK_COMBINATIONS && (split = sets.trySplit()) != null) {
+                prefix = new Search(split, count, found);
+                rest = new Search(sets, count, found);
+                invokeAll(prefix, rest);
+                return;
+            }
+
+            while (found.get() < count && sets.tryAdvance(result::add))
+                found.incrementAndGet();
+        }
+
+        /**
+         * Adds the sets found by the task and its halves, in order, up to count sets.
+         */
+        void collect(List<int[]> sets) {
+            for (int[] set : result)
+                if (sets.size() < count) sets.add(set);
+            if (prefix != null) {
+                prefix.collect(sets);
+                rest.collect(sets);
+            }
+        }
+    }
+}
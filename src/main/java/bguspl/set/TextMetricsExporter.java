@@ -0,0 +1,24 @@
+package bguspl.set;
+
+import java.io.PrintStream;
+
+/**
+ * Prints all the measurements of a game when it ends.
+ */
+public class TextMetricsExporter implements MetricsExporter {
+
+    private final PrintStream out;
+
+    public TextMetricsExporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void open(String game, GameStats stats) {}
+
+    @Override
+    public void close(String game, GameStats stats) {
+        out.print("stats of " + game + ":\n" + stats.dump());
+        out.flush();
+    }
+}
@@ -2,6 +2,7 @@ package bguspl.set;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -19,44 +20,62 @@ public class UserInterfaceDecorator implements UserInterface {
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
+    /**
+     * Logs a message. The arguments are boxed only if the message is logged at all, and the message is built from the
+     * pattern by the handler (see java.text.MessageFormat), off the calling thread when the handler is asynchronous.
+     *
+     * @param pattern - the message, with {0,number,#} and {1,number,#} in place of the (numeric) arguments.
+     */
+    private void log(String pattern) {
+        if (logger.isLoggable(Level.SEVERE)) logger.log(Level.SEVERE, pattern);
+    }
+
+    private void log(String pattern, long arg) {
+        if (logger.isLoggable(Level.SEVERE)) logger.log(Level.SEVERE, pattern, arg);
+    }
+
+    private void log(String pattern, long arg0, long arg1) {
+        if (logger.isLoggable(Level.SEVERE)) logger.log(Level.SEVERE, pattern, new Object[]{arg0, arg1});
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        log("placing card {0,number,#} in slot {1,number,#}", card, slot);
         util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        log("removing card from slot {0,number,#}", slot);
         util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        log("player {0,number,#} placing token on slot {1,number,#}", player + 1, slot);
         util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        log("removing all tokens");
         util.spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        log("removing tokens from slot {0,number,#}", slot);
         util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        log("removing player {0,number,#} token from slot {1,number,#}", player + 1, slot);
         util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
@@ -64,41 +83,43 @@ public class UserInterfaceDecorator implements UserInterface {
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+            log("updating countdown to {0,number,#}", millies);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        log("updating elapsed time to {0,number,#}", millies);
         util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        log("setting player {0,number,#} freeze to {1,number,#}", player + 1, millies);
         util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        log("setting player {0,number,#} score to {1,number,#}", player + 1, score);
         util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        if (logger.isLoggable(Level.SEVERE)) {
+            List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
+            logger.severe("announcing winner(s): " + String.join(", ", winners));
+        }
         if (ui != null) ui.announceWinner(players);
     }
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
+        log("disposing of user interface elements");
         if (ui != null) ui.dispose();
     }
 }
@@ -0,0 +1,171 @@
+package bguspl.set;
+
+import java.awt.EventQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Applies the calls to a user interface on another thread (by default the Swing event dispatch thread), so the game
+ * threads never wait for it. Calls that only show the latest value are coalesced: if the countdown, the elapsed time,
+ * or the freeze or score of a player changes several times before the user interface catches up, only the latest
+ * value is shown. All the other calls are applied in the order they were made, each after the latest values pending
+ * (so e.g. the final scores are shown before the winner is announced). Everything pending is applied in one batch,
+ * and a batch is scheduled only when there is something to show.
+ */
+public class UserInterfaceDispatcher implements UserInterface {
+
+    /**
+     * Marks a value with no pending update.
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final UserInterface ui;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Runnable> calls = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // the latest values not shown yet (NONE if there is none). A countdown is kept as millies * 2 + (warn ? 1 : 0)
+    private final AtomicLong countdown = new AtomicLong(NONE);
+    private final AtomicLong elapsed = new AtomicLong(NONE);
+    private final AtomicLongArray freezes;
+    private final AtomicLongArray scores;
+    private final AtomicBoolean playersChanged = new AtomicBoolean();
+
+    /**
+     * Applies the calls on the Swing event dispatch thread.
+     *
+     * @param ui      - the user interface.
+     * @param players - the number of players.
+     */
+    public UserInterfaceDispatcher(UserInterface ui, int players) {
+        this(ui, players, EventQueue::invokeLater);
+    }
+
+    /**
+     * @param ui       - the user interface.
+     * @param players  - the number of players.
+     * @param executor - runs the batches of calls (one at a time).
+     */
+    public UserInterfaceDispatcher(UserInterface ui, int players, Executor executor) {
+        this.ui = ui;
+        this.executor = executor;
+        freezes = new AtomicLongArray(players);
+        scores = new AtomicLongArray(players);
+        for (int i = 0; i < players; ++i) {
+            freezes.set(i, NONE);
+            scores.set(i, NONE);
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        call(() -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        call(() -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        countdown.set(millies * 2 + (warn ? 1 : 0));
+        schedule();
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        elapsed.set(millies);
+        schedule();
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+        playersChanged.set(true);
+        schedule();
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        freezes.set(player, millies);
+        playersChanged.set(true);
+        schedule();
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        call(() -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        call(ui::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        call(() -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        call(() -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        int[] winners = players.clone();
+        call(() -> ui.announceWinner(winners));
+    }
+
+    @Override
+    public void dispose() {
+        call(ui::dispose);
+    }
+
+    private void call(Runnable call) {
+        calls.add(call);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) executor.execute(this::apply);
+    }
+
+    /**
+     * Applies everything pending (runs on the executor).
+     */
+    private void apply() {
+        // anything that arrives from now on schedules another batch
+        scheduled.set(false);
+
+        Runnable call;
+        while ((call = calls.poll()) != null) {
+            applyLatest();
+            call.run();
+        }
+        applyLatest();
+    }
+
+    /**
+     * Applies the latest values not shown yet (runs on the executor).
+     */
+    private void applyLatest() {
+        long value = countdown.getAndSet(NONE);
+        if (value != NONE) ui.setCountdown(value >> 1, (value & 1) != 0);
+        value = elapsed.getAndSet(NONE);
+        if (value != NONE) ui.setElapsed(value);
+
+        if (playersChanged.getAndSet(false))
+            for (int player = 0; player < scores.length(); ++player) {
+                value = scores.getAndSet(player, NONE);
+                if (value != NONE) ui.setScore(player, (int) value);
+                value = freezes.getAndSet(player, NONE);
+                if (value != NONE) ui.setFreeze(player, value);
+            }
+    }
+}
@@ -1,6 +1,7 @@
 package bguspl.set;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,6 +32,16 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Finds the card that completes a legal set with the given cards. For featureSize >= 3 the card is unique, as
+     * every feature of it is either the value all the given cards share or the one value none of them has.
+     *
+     * @param cards - an array of featureSize - 1 distinct card ids.
+     * @return - the card that forms a legal set with the given cards, or -1 if there is none (or it is not unique,
+     *           i.e. featureSize < 3).
+     */
+    int completeSet(int[] cards);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +51,15 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Streams the sets in the given collection of cards, found lazily as the stream is consumed (so a caller that
+     * stops early does not pay for the rest). A parallel stream splits the search over the cores.
+     *
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - a stream of integer arrays, each one contains the card ids of a legal set (in the order of findSets).
+     */
+    Stream<int[]> streamSets(List<Integer> deck);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
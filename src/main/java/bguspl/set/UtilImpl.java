@@ -1,10 +1,10 @@
 package bguspl.set;
 
-import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,86 +13,72 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of every card, computed once.
+     */
+    private final FeatureTable features;
+
+    /**
+     * The card that completes each set, shared by every game of the same card shape.
+     */
+    private final CompletionTable completions;
+
+    private final SetFinder finder;
+
+    /**
+     * Draws the spins when the game is seeded (null if it is not).
+     */
+    private final Random random;
+
     public UtilImpl(Config config) {
         this.config = config;
-    }
-
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
-        }
+        this.random = config.seed == 0 ? null : config.random(Config.UTIL_STREAM);
+        this.features = new FeatureTable(config);
+        this.completions = CompletionTable.of(features);
+        // a search is split only when there is more than one core to split it over
+        ForkJoinPool pool = config.parallelFindSets && ForkJoinPool.getCommonPoolParallelism() > 1
+                ? ForkJoinPool.commonPool() : null;
+        this.finder = new SetFinder(features, completions, pool);
     }
 
     @Override
     public int[] cardToFeatures(int card) {
-        int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
-        return features;
+        return features.features(card).clone();
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
-        int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        int[][] features = new int[cards.length][];
+        for (int i = 0; i < cards.length; ++i)
+            features[i] = cardToFeatures(cards[i]);
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
+        return features.isSet(cards);
+    }
 
-            if (sameSame == butDifferent) return false;
-        }
-        return true;
+    @Override
+    public int completeSet(int[] cards) {
+        return completions.complete(cards);
     }
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
-        int r = config.featureSize;
-        int[] combination = new int[r];
-
-        for (int i = 0; i < r; ++i)
-            combination[i] = i;
-
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
-            }
+        return finder.findSets(deck, count);
+    }
 
-            // generate next combination in lexicographic order
-            int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
-            combination[t]++;
-            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
-        }
-        return sets;
+    @Override
+    public Stream<int[]> streamSets(List<Integer> deck) {
+        return finder.streamSets(deck);
     }
 
     public void spin() {
         if (config.randomSpinMax <= 0) return;
-        long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
+        long cycles = random == null
+                ? ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax)
+                : config.randomSpinMin + (long) (random.nextDouble() * (config.randomSpinMax - config.randomSpinMin));
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
@@ -0,0 +1,370 @@
+package bguspl.set;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Runs the long running loops of a game (players, computer players and the timer) as platform threads, as tasks on
+ * a pool of threads shared by all the games in the process, as virtual threads, or one at a time in a reproducible
+ * order. The loops block only through the methods of their workers (park, sleep etc.), so the deterministic workers
+ * know when to pass the turn on.
+ * Only the virtual threads run more loops than the OS has threads for: they are scheduled on a bounded pool of carrier
+ * threads, which a parked loop does not hold. A pooled loop holds its thread while it blocks, like a platform thread.
+ */
+public abstract class Workers {
+
+    /**
+     * The ways to run the game loops.
+     */
+    public enum Mode {
+        /**
+         * A new platform thread per loop.
+         */
+        THREADS,
+        /**
+         * A task per loop, on a pool of platform threads that are reused by all the games in the process. It saves
+         * starting a thread per loop, but still takes a thread per running loop.
+         */
+        POOLED,
+        /**
+         * A virtual thread per loop, so the number of loops is not bounded by the OS threads (Java 21 and above,
+         * otherwise pooled, see virtualSupported).
+         */
+        VIRTUAL,
+        /**
+         * A thread per loop, but only one loop runs at a time, in an order drawn from the configured seed, on a
+         * virtual clock (see DeterministicWorkers).
+         */
+        DETERMINISTIC
+    }
+
+    /**
+     * A handle to a game loop, with the same termination methods as a thread.
+     */
+    public interface Worker {
+
+        /**
+         * Starts running the loop.
+         */
+        void start();
+
+        /**
+         * Interrupts the loop (if it is running).
+         */
+        void interrupt();
+
+        /**
+         * Waits for the loop to end.
+         */
+        void join() throws InterruptedException;
+    }
+
+    /**
+     * Creates a handle to a loop that is not started yet.
+     *
+     * @param name   - the name of the loop (the name of its thread, while it runs).
+     * @param target - the loop.
+     * @return - the handle of the loop.
+     */
+    public abstract Worker create(String name, Runnable target);
+
+    /**
+     * Prepares a loop that runs on a thread created elsewhere (e.g. the dealer's) to be run by these workers.
+     *
+     * @param name   - the name of the loop.
+     * @param target - the loop.
+     * @return - the loop to run on the thread.
+     */
+    public Runnable task(String name, Runnable target) {
+        return target;
+    }
+
+    /**
+     * Blocks the calling loop until it is unparked or interrupted (or spuriously), like LockSupport.park.
+     *
+     * @param blocker - the object the loop waits for.
+     */
+    public void park(Object blocker) {
+        LockSupport.park(blocker);
+    }
+
+    /**
+     * Blocks the calling loop for up to the given time, until it is unparked or interrupted (or spuriously).
+     *
+     * @param blocker - the object the loop waits for.
+     * @param nanos   - the maximum number of nanoseconds to wait.
+     */
+    public void parkNanos(Object blocker, long nanos) {
+        LockSupport.parkNanos(blocker, nanos);
+    }
+
+    /**
+     * Unblocks a parked loop (or makes its next park return at once), like LockSupport.unpark.
+     *
+     * @param thread - the thread of the loop (nothing happens if it is null).
+     */
+    public void unpark(Thread thread) {
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Blocks the calling loop for the given time, like Thread.sleep.
+     *
+     * @param millis - the number of milliseconds to sleep.
+     */
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * Lets the other loops run (e.g. in a loop that does not block), like Thread.yield.
+     */
+    public void yieldTurn() {
+        Thread.yield();
+    }
+
+    /**
+     * @return - the current time of the game loops in nanoseconds (only differences between times are meaningful),
+     * like System.nanoTime.
+     */
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Runs a short task periodically, on a scheduler thread shared by all the games in the process (so periodic
+     * tasks hold no thread of their own).
+     *
+     * @param name         - the name of the task.
+     * @param task         - the task (it must not block).
+     * @param periodMillis - the number of milliseconds between runs (the first run is immediate).
+     * @return - cancels the task (it may still run once if it is already due).
+     */
+    public Runnable repeat(String name, Runnable task, long periodMillis) {
+        ScheduledFuture<?> future = Scheduler.INSTANCE.scheduleAtFixedRate(task, 0, periodMillis, TimeUnit.MILLISECONDS);
+        return () -> future.cancel(false);
+    }
+
+    /**
+     * The scheduler of the periodic tasks (created on first use).
+     */
+    private static class Scheduler {
+
+        static final ScheduledExecutorService INSTANCE;
+
+        static {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            INSTANCE = scheduler;
+        }
+    }
+
+    /**
+     * @param config - the game configuration (its execution mode, and the seed of the deterministic mode).
+     * @param logger - the logger to warn with if the mode is not supported.
+     * @return - the workers for the configured mode (a new instance for the deterministic mode).
+     */
+    public static Workers forConfig(Config config, Logger logger) {
+        if (config.executionMode == Mode.DETERMINISTIC)
+            return new DeterministicWorkers(config.random(Config.SCHEDULER_STREAM), logger);
+        return forMode(config.executionMode, logger);
+    }
+
+    /**
+     * @param mode   - the way to run the game loops.
+     * @param logger - the logger to warn with if the mode is not supported.
+     * @return - the workers for the given mode (a new, unseeded instance for the deterministic mode).
+     */
+    public static Workers forMode(Mode mode, Logger logger) {
+        switch (mode) {
+            case DETERMINISTIC:
+                return new DeterministicWorkers(new Random(), logger);
+            case POOLED:
+                return Pooled.INSTANCE;
+            case VIRTUAL:
+                if (Virtual.supported()) return Virtual.INSTANCE;
+                logger.severe("warning: virtual threads are not supported by this java version. Using pooled threads.");
+                return Pooled.INSTANCE;
+            default:
+                return Platform.INSTANCE;
+        }
+    }
+
+    /**
+     * @return - true iff the VIRTUAL mode runs virtual threads in this java version (it runs pooled ones otherwise).
+     */
+    public static boolean virtualSupported() {
+        return Virtual.supported();
+    }
+
+    /**
+     * Wraps a thread.
+     */
+    private static class ThreadWorker implements Worker {
+
+        private final Thread thread;
+
+        ThreadWorker(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void start() {
+            thread.start();
+        }
+
+        @Override
+        public void interrupt() {
+            thread.interrupt();
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            thread.join();
+        }
+    }
+
+    private static class Platform extends Workers {
+
+        static final Platform INSTANCE = new Platform();
+
+        @Override
+        public Worker create(String name, Runnable target) {
+            return new ThreadWorker(new Thread(target, name));
+        }
+    }
+
+    private static class Virtual extends Workers {
+
+        static final Virtual INSTANCE = new Virtual();
+
+        private static final Method ofVirtual, name, unstarted;
+
+        static {
+            Method[] methods = new Method[3];
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                methods[0] = Thread.class.getMethod("ofVirtual");
+                methods[1] = builder.getMethod("name", String.class);
+                methods[2] = builder.getMethod("unstarted", Runnable.class);
+            } catch (ReflectiveOperationException ignored) {
+                methods = new Method[3];
+            }
+            ofVirtual = methods[0];
+            name = methods[1];
+            unstarted = methods[2];
+        }
+
+        static boolean supported() {
+            return ofVirtual != null;
+        }
+
+        @Override
+        public Worker create(String name, Runnable target) {
+            try {
+                Object builder = Virtual.name.invoke(ofVirtual.invoke(null), name);
+                return new ThreadWorker((Thread) unstarted.invoke(builder, target));
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("cannot create a virtual thread", e);
+            }
+        }
+    }
+
+    private static class Pooled extends Workers {
+
+        static final Pooled INSTANCE = new Pooled();
+
+        /**
+         * The game loops block for most of their lives, so the pool cannot be bounded (a loop waiting for a free
+         * thread could be the one the running loops are waiting for). Idle threads are reused by the next loops.
+         */
+        private final ExecutorService pool;
+
+        private Pooled() {
+            AtomicInteger threads = new AtomicInteger();
+            pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "worker-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        public Worker create(String name, Runnable target) {
+            return new PooledWorker(name, target);
+        }
+
+        private class PooledWorker implements Worker {
+
+            private final String name;
+            private final Runnable target;
+            private final CountDownLatch done = new CountDownLatch(1);
+            private final Object lock = new Object();
+
+            /**
+             * The pool thread running the loop (null if it is not running).
+             */
+            private Thread thread;
+            private boolean interrupted;
+
+            PooledWorker(String name, Runnable target) {
+                this.name = name;
+                this.target = target;
+            }
+
+            @Override
+            public void start() {
+                pool.execute(this::run);
+            }
+
+            private void run() {
+                Thread current = Thread.currentThread();
+                String poolName = current.getName();
+                synchronized (lock) {
+                    thread = current;
+                    current.setName(name);
+                    if (interrupted) current.interrupt();
+                }
+                try {
+                    target.run();
+                } finally {
+                    // the thread goes back to the pool, so it must not be interrupted on behalf of this loop anymore
+                    synchronized (lock) {
+                        thread = null;
+                        current.setName(poolName);
+                        Thread.interrupted();
+                    }
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void interrupt() {
+                synchronized (lock) {
+                    interrupted = true;
+                    if (thread != null) thread.interrupt();
+                }
+            }
+
+            @Override
+            public void join() throws InterruptedException {
+                done.await();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * Chooses the key presses of a computer player. The computer player loop asks for one key press at a time, whenever
+ * the player can take it (it is not frozen and its queue of key presses is not full).
+ */
+public interface BotStrategy {
+
+    /**
+     * Chooses the next key press. May block (e.g. to simulate the reaction time of a person).
+     *
+     * @return - the slot of the key to press, or Table.EMPTY to press nothing this time.
+     * @throws InterruptedException - if the computer player is interrupted (the game ends).
+     */
+    int nextSlot() throws InterruptedException;
+
+    /**
+     * Creates the configured strategy (see Config.botStrategy) of a computer player.
+     *
+     * @param env    - the environment object.
+     * @param table  - the table the player plays on.
+     * @param player - the computer player.
+     * @param random - the random choices of the player.
+     * @return - the strategy.
+     */
+    static BotStrategy create(Env env, Table table, Player player, Random random) {
+        if (env.config.botStrategy.equalsIgnoreCase("Solver")) return new SolverBot(env, table, player, random);
+        if (!env.config.botStrategy.equalsIgnoreCase("Random"))
+            env.logger.severe("warning: unknown bot strategy " + env.config.botStrategy + ". Using random.");
+        return new RandomBot(env.config.tableSize, random);
+    }
+}
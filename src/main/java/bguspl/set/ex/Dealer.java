@@ -1,14 +1,19 @@
 package bguspl.set.ex;
 
+import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.GameSnapshot;
+import bguspl.set.Workers;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -33,16 +38,22 @@ public class Dealer implements Runnable {
      */
     protected final List<Integer> deck;
 
+    /**
+     * The legal sets that can still be formed from the cards that were not collected yet.
+     */
+    private final RemainingSets remainingSets;
+
     /**
      * True iff game should be terminated.
      */
     public volatile boolean terminate;
 
     ///
-    private Thread[] playersThreads;
+    private Workers.Worker[] playersThreads;
     private LinkedList<Integer> slotsToRemove;
     private Timer timer;
-    private Queue<Player> submitedPlayers;
+    // players enqueue their sets without locking, only the dealer thread takes them out
+    private final Queue<Player> submitedPlayers;
     protected volatile boolean dealing; 
     ///
 
@@ -51,20 +62,41 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime;
 
-    private Thread timerThread;
+    private volatile Thread dealerThread;
+
+    /**
+     * Released when the dealer's loop returns (the dealer may run on a pooled thread, which does not end with it).
+     * Also guards dealerThread, so the thread is not interrupted once the loop returned.
+     */
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * The snapshots asked for, taken by the dealer at the next consistent point.
+     */
+    private final Queue<CompletableFuture<GameSnapshot>> snapshotRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The snapshot the game was restored from, until its cards are dealt (null if none).
+     */
+    private GameSnapshot restored;
 
-    private Thread dealerThread;
+    /**
+     * Shuffles the deck (seeded by the configuration).
+     */
+    private final Random random;
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
         deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        remainingSets = new RemainingSets(env);
+        random = env.config.random(Config.DEALER_STREAM);
         
         ///
-        this.playersThreads = new Thread[players.length];
+        this.playersThreads = new Workers.Worker[players.length];
         this.slotsToRemove = new LinkedList<>();
-        this.submitedPlayers = new LinkedList<>();
+        this.submitedPlayers = new ConcurrentLinkedQueue<>();
         this.reshuffleTime = env.config.turnTimeoutMillis;
         this.timer = new Timer(reshuffleTime, env);
         this.dealing = true;
@@ -76,61 +108,73 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
+        synchronized (finished) { dealerThread = Thread.currentThread(); }
+        try {
+            play();
+        } finally {
+            synchronized (finished) { dealerThread = null; }
+            finished.countDown();
+            failSnapshots();
+        }
+    }
+
+    private void play() {
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
         ///
 
-        dealerThread = Thread.currentThread();
-
         for (int i = 0; i < playersThreads.length; i++) {
-            playersThreads[i] = new Thread(players[i]);
+            playersThreads[i] = env.workers.create("player-" + players[i].id, players[i]);
+            // the player unparks the dealer once started
             playersThreads[i].start();
-            try{synchronized(this){wait();}} catch(InterruptedException e){}
+            while(!players[i].started && !terminate){
+                env.workers.park(this);
+                if(Thread.interrupted()) break;
+            }
         }
 
-        if(reshuffleTime  >= 0)
-        {
-        timerThread = new Thread(timer);
-
-        timerThread.start();
-        }
+        timer.start();
 
         ///
         while (!shouldFinish()) {
-                Collections.shuffle(deck);
+                if (restored != null) resume();
+                else {
+                    Collections.shuffle(deck, random);
 
-                placeCardsOnTable();
+                    placeCardsOnTable();
 
-                synchronized(timer){timer.notify();}
+                    timer.reset();
+                }
 
                 dealing = false;
+                for (Player p : players) p.wakeComputer();
 
                 timerLoop();
 
                 dealing = true;
+                if (!terminate && !shouldFinish()) {
+                    env.stats.reshuffled(env.config.turnTimeoutMillis > 0);
+                    env.events.reshuffled(env.config.turnTimeoutMillis > 0);
+                }
 
                 removeAllCardsFromTable();
         }
 
-        announceWinners();
-
-
-        try{
-            if(timerThread != null){
-                timer.terminate = true;
-                timerThread.interrupt();
-                timerThread.join();
-            }
-        } 
-        catch(InterruptedException ign) {}
+        timer.stop();
 
         for(int i = players.length-1; i>=0; i--){
             players[i].terminate();
+            playersThreads[i].interrupt();
             try{playersThreads[i].join();} catch(InterruptedException e){}
         }
 
+        // the winners are announced once the players are done (the last point may still have been in progress),
+        // and the user interface caught up with the table
+        try{table.awaitDealt();} catch(InterruptedException ignored){}
+        announceWinners();
+
         if(!terminate) 
         {
-            try{dealerThread.sleep(env.config.endGamePauseMillies);} catch(InterruptedException e) {}
+            try{env.workers.sleep(env.config.endGamePauseMillies);} catch(InterruptedException e) {}
             env.ui.dispose();
         }
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
@@ -140,19 +184,31 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop(){
-        while (!terminate && (timer.done()|| (env.config.turnTimeoutMillis <= 0 && !noSetsOnTable())))
+        while (!terminate && (timer.counting() || (env.config.turnTimeoutMillis <= 0 && !noSetsOnTable())))
          {
             sleepUntilWokenOrTimeout();
          }
     }
 
+    /**
+     * @return - the thread of the dealer (null if it is not running).
+     */
+    Thread dealerThread() {
+        return dealerThread;
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
             terminate = true;
-            dealerThread.interrupt();
-            try{dealerThread.join();} catch(InterruptedException e){}
+            Thread thread;
+            synchronized (finished) {
+                thread = dealerThread;
+                if(thread != null) thread.interrupt();
+            }
+            if(thread == null) return;
+            try{finished.await();} catch(InterruptedException e){}
         }
 
     /**
@@ -161,7 +217,7 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     protected boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || remainingSets.count() == 0;
     }
 
     /**
@@ -170,63 +226,71 @@ public class Dealer implements Runnable {
     private  void removeCardsFromTable() {
         ///
 
-        synchronized(table){
+        // only the removed slots are locked, players keep toggling tokens on the other slots
+        int[] slots = slotsToRemove.stream().mapToInt(Integer::intValue).toArray();
+        table.lockSlots(slots);
+        try{
         Iterator<Integer> it = slotsToRemove.iterator();
         while(it.hasNext()){
-            Integer slotToRemove = it.next();
-            for(Player p : players)
-            {
-                if(p.myCards.contains(table.slotToCard[slotToRemove])){
-                    p.myCards.remove((Integer)table.slotToCard[slotToRemove]);
-                    env.ui.removeToken(p.id, slotToRemove);
-                }
-            }
+            int slotToRemove = it.next();
+            int card = table.slotToCard[slotToRemove];
+            removeTokens(slotToRemove, card);
 
+            remainingSets.collect(card);
             table.removeCard(slotToRemove); 
         }
+        } finally {
+            table.unlockSlots(slots);
+        }
 
         slotsToRemove.clear();
         
         terminate = isOver();
-
-        //
-    }
         ///
     }
 
+    /**
+     * Takes the tokens off a slot that is about to be cleared, visiting only the players that have a token on it
+     * (removing the card then clears the slot's tokens on the table). The caller must hold the lock of the slot.
+     *
+     * @param slot - the slot.
+     * @param card - the card in the slot.
+     */
+    private void removeTokens(int slot, int card) {
+        for(int id = table.nextPlayerOnSlot(slot, 0); id != Table.EMPTY; id = table.nextPlayerOnSlot(slot, id + 1)){
+            players[id].deselect(card);
+            env.ui.removeToken(id, slot);
+        }
+    }
+
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
 
-        int slot = 0;
-        while (deck.size() != 0 && table.countCards() < env.config.rows*env.config.columns) {
-            if (table.slotToCard[slot] == null) {
-                table.placeCard(deck.remove(0), slot);
-            }
-            slot++;
+        table.beginDealing();
+        int slot = table.nextEmptySlot(0);
+        while (deck.size() != 0 && slot != Table.EMPTY) {
+            table.placeCard(deck.remove(0), slot);
+            slot = table.nextEmptySlot(slot + 1);
         }
+        table.endDealing();
     }
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
      */
-    private synchronized void sleepUntilWokenOrTimeout(){
-        while(submitedPlayers.isEmpty() && timer.time != 0)
-            {
-                notifyAll();
-                if(timer.time > 0)
-                {
-                    try{wait(timer.time);} catch(InterruptedException e){return;}
-                }
-                else
-                {
-                    try{wait();} catch(InterruptedException e){return;}
-                    checklegal();
-                    break;
-                }
-            }
-        if(timer.time != 0) checklegal();
+    private void sleepUntilWokenOrTimeout(){
+        if(submitedPlayers.isEmpty())
+        {
+            // waits for the deadline itself, so a reshuffle is on time however late the timer ticks are
+            if(timer.counting()) env.workers.parkNanos(this, timer.remainingNanos());
+            else env.workers.park(this);
+            if(Thread.interrupted()) return;
+        }
+        checklegal();
+        // between two rounds of checks no verdict is half given and no card is moving
+        if(!snapshotRequests.isEmpty()) takeSnapshots();
     }
 
     /**
@@ -234,22 +298,24 @@ public class Dealer implements Runnable {
      */
     private void removeAllCardsFromTable() {
 
-        synchronized(table){
-        for(int slot = 0; slot < table.slotToCard.length ; slot++){
-            if(table.slotToCard[slot] == null)
-                continue;
-
-            for(Player p: players)
-            {
-                if(p.myCards.contains(table.slotToCard[slot])){
-                    p.myCards.remove((Integer)table.slotToCard[slot]);
-                    env.ui.removeToken(p.id, slot);
-                }
-            }
-            deck.add(table.slotToCard[slot]);
+        table.beginDealing();
+        for(int slot = table.nextOccupiedSlot(0); slot != Table.EMPTY ; slot = table.nextOccupiedSlot(slot + 1)){
+            table.lockSlot(slot);
+            try{
+            int card = table.slotToCard[slot];
+            removeTokens(slot, card);
+            deck.add(card);
             table.removeCard(slot);
+            } finally {
+                table.unlockSlot(slot);
+            }
         }
-    }
+        table.endDealing();
+
+        // submissions that were not checked before the reshuffle refer to cards that are no longer on the table
+        Player submited;
+        while((submited = submitedPlayers.poll()) != null)
+            env.workers.unpark(submited.playerThread);
     }
 
     /**
@@ -269,60 +335,188 @@ public class Dealer implements Runnable {
         env.ui.announceWinner(winners.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    /**
+     * Called by a player thread that holds a full selection. The player then parks until its verdict is given.
+     *
+     * @param submited - the player that submitted its cards.
+     */
     public void submitCards(Player submited){
         submitedPlayers.add(submited);
+        env.stats.submitted();
+        env.events.submitted(submited.id);
+        env.workers.unpark(dealerThread);
     }
 
     public void checklegal()
     {
-        while(!submitedPlayers.isEmpty()){
-            Player p = submitedPlayers.remove();
-            if(p.myCards.size() < env.config.featureSize){ notifyAll();}
+        long start = env.stats.now();
+        boolean checked = false;
+        Player p;
+        while((p = submitedPlayers.poll()) != null){
+            checked = true;
+            long checkStart = env.stats.now();
+            int[] cards = p.selectedCards();
+            if(cards.length < env.config.featureSize){ env.workers.unpark(p.playerThread);}
 
             else{
             p.isFrozen = true;
-            if(env.util.testSet(p.myCards.stream().mapToInt(Integer::intValue).toArray()))
+            boolean legal = env.util.testSet(cards);
+            env.events.verdict(p.id, legal);
+            if(legal)
                 {
+                p.freezeLeft = env.config.pointFreezeMillis;
+                p.pointPending = true;
                 p.legalset = 1;
 
-                for(int card: p.myCards){
+                for(int card: cards){
                    slotsToRemove.add(table.cardToSlot[card]);
                 }
 
 
+                // the collected set and its replacement are shown as one batch
+                table.beginDealing();
                 removeCardsFromTable();
                 placeCardsOnTable();
+                table.endDealing();
 
-                timer.reset = true;
+                timer.reset();
             }
             else
             {
+                p.freezeLeft = env.config.penaltyFreezeMillis;
                 p.legalset = 0;
             }
-            notifyAll();
+            env.stats.checked(legal, checkStart);
+            // only the submitting player is woken up, the others keep waiting for their own verdicts
+            env.workers.unpark(p.playerThread);
         }
 
         }
+        if(checked) env.stats.dealerLoop(start);
     }
 
-    private boolean isOver(){
-        List<Integer> toCheck = new LinkedList<>();
+    /**
+     * Asks for a snapshot of the game, which the dealer takes at the next consistent point: after checking the
+     * submitted sets, with every slot locked (so no token is being placed or removed).
+     *
+     * @return - the snapshot, once taken (failed with an IllegalStateException if the game ends first).
+     */
+    public CompletableFuture<GameSnapshot> snapshot() {
+        CompletableFuture<GameSnapshot> request = new CompletableFuture<>();
+        snapshotRequests.add(request);
+        if (finished.getCount() == 0) failSnapshots();
+        else env.workers.unpark(dealerThread);
+        return request;
+    }
 
-        toCheck.addAll(deck);
-        List<Integer> tmp = new ArrayList<>(Arrays.asList(table.slotToCard));
-        while(tmp.contains(null))
-            tmp.remove(null);
-        toCheck.addAll(tmp);
+    private void failSnapshots() {
+        CompletableFuture<GameSnapshot> request;
+        while ((request = snapshotRequests.poll()) != null)
+            request.completeExceptionally(new IllegalStateException("the game ended"));
+    }
 
-        return env.util.findSets(toCheck, 1).size() == 0;
+    private void takeSnapshots() {
+        int[] slots = IntStream.range(0, env.config.tableSize).toArray();
+        GameSnapshot snapshot;
+        table.lockSlots(slots);
+        try {
+            int[] scores = new int[players.length];
+            long[] freezeMillis = new long[players.length];
+            boolean[] pending = new boolean[players.length];
+            int[][] selections = new int[players.length][];
+            for (Player p : players) {
+                scores[p.id] = p.settledScore();
+                freezeMillis[p.id] = p.isFrozen ? p.freezeLeft : 0;
+                selections[p.id] = p.selectedCards();
+                // the verdict is read first: the player clears awaitingVerdict before it takes the verdict back
+                pending[p.id] = p.legalset == 2 && p.awaitingVerdict
+                        && selections[p.id].length == env.config.featureSize;
+            }
+            snapshot = new GameSnapshot(env.config, timer.remainingNanos(),
+                    deck.stream().mapToInt(Integer::intValue).toArray(), table.slotToCard.clone(), scores,
+                    freezeMillis, pending, selections);
+        } finally {
+            table.unlockSlots(slots);
+        }
+        CompletableFuture<GameSnapshot> request;
+        while ((request = snapshotRequests.poll()) != null)
+            request.complete(snapshot);
     }
 
-    protected boolean noSetsOnTable(){
-        List<Integer> tmp = new ArrayList<>(Arrays.asList(table.getSlots()));
-        while(tmp.contains(null))
-            tmp.remove(null);
+    /**
+     * Restores a game from a snapshot, before the game starts: the deck, the collected cards and the players' scores
+     * and freezes now, and the cards on the table, the tokens and the turn timer once the dealer starts.
+     *
+     * @param snapshot - the snapshot.
+     * @throws IllegalArgumentException - if the snapshot is of a game of another size, or has invalid cards.
+     * @throws IllegalStateException    - if the game started already.
+     */
+    public void restore(GameSnapshot snapshot) {
+        snapshot.check(env.config);
+        if (dealerThread != null || finished.getCount() == 0)
+            throw new IllegalStateException("the game started already");
+
+        boolean[] kept = new boolean[env.config.deckSize];
+        for (int card : snapshot.deck) keep(kept, card);
+        for (int card : snapshot.slotToCard) if (card != Table.EMPTY) keep(kept, card);
+        deck.clear();
+        for (int card : snapshot.deck) deck.add(card);
+        for (int card = 0; card < kept.length; ++card)
+            if (!kept[card]) remainingSets.collect(card);
+        for (Player p : players)
+            p.restore(snapshot.scores[p.id], snapshot.freezeMillis[p.id]);
+        restored = snapshot;
+    }
+
+    private static void keep(boolean[] kept, int card) {
+        if (card < 0 || card >= kept.length || kept[card])
+            throw new IllegalArgumentException("bad card " + card + " in the snapshot");
+        kept[card] = true;
+    }
 
-        return env.util.findSets(tmp, 1).size() == 0;
+    /**
+     * Deals the cards of the restored snapshot to their slots, places the players' tokens on them and resumes the
+     * turn timer.
+     */
+    private void resume() {
+        GameSnapshot snapshot = restored;
+        restored = null;
+
+        table.beginDealing();
+        for (int slot = 0; slot < snapshot.slotToCard.length; ++slot)
+            if (snapshot.slotToCard[slot] != Table.EMPTY) table.placeCard(snapshot.slotToCard[slot], slot);
+        placeCardsOnTable();
+        for (Player p : players)
+            for (int card : snapshot.selections[p.id]) {
+                int slot = table.slotOf(card);
+                if (slot == Table.EMPTY) continue;
+                table.lockSlot(slot);
+                try {
+                    if (!p.select(card)) continue;
+                    table.placeToken(p.id, slot);
+                    env.events.tokenPlaced(p.id, slot);
+                    env.ui.placeToken(p.id, slot);
+                } finally {
+                    table.unlockSlot(slot);
+                }
+            }
+        table.endDealing();
+
+        for (Player p : players) {
+            p.awaitingVerdict = snapshot.pending[p.id];
+            if (snapshot.pending[p.id]) {
+                p.resubmit = true;
+                env.workers.unpark(p.playerThread);
+            }
+        }
+        timer.resume(snapshot.timerNanos);
+    }
+
+    private boolean isOver(){
+        return remainingSets.count() == 0;
+    }
 
+    protected boolean noSetsOnTable(){
+        return !table.hasSet();
     }
 }
@@ -0,0 +1,133 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * This class shows the changes of the table on the user interface, config.tableDelayMillis apart, on a loop of its
+ * own. The table state changes immediately, so the game never waits for the animation.
+ * Changes are grouped in batches (e.g. a whole reshuffle) that are handed to the loop at once.
+ */
+class DealingPipeline {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The batches waiting to be shown.
+     */
+    private final Queue<List<Runnable>> pending;
+
+    /**
+     * The batch being collected (null if none).
+     */
+    private List<Runnable> batch;
+
+    /**
+     * The number of nested batches being collected.
+     */
+    private int depth;
+
+    /**
+     * True iff the loop showing the batches is running.
+     */
+    private boolean running;
+
+    /**
+     * The thread waiting for the changes to be shown (null if none).
+     */
+    private Thread waiter;
+
+    DealingPipeline(Env env) {
+        this.env = env;
+        this.pending = new LinkedList<>();
+    }
+
+    /**
+     * Starts collecting the following changes into one batch (batches may be nested, the outermost one counts).
+     */
+    synchronized void beginBatch() {
+        if (depth++ == 0) batch = new ArrayList<>();
+    }
+
+    /**
+     * Hands the collected batch to the loop.
+     */
+    synchronized void endBatch() {
+        if (--depth > 0) return;
+        List<Runnable> done = batch;
+        batch = null;
+        if (!done.isEmpty()) submit(done);
+    }
+
+    /**
+     * Shows a change of the table on the user interface (as a part of the current batch, if there is one).
+     *
+     * @param update - the user interface update.
+     */
+    synchronized void show(Runnable update) {
+        if (env.config.tableDelayMillis <= 0) {
+            update.run(); // nothing to pace
+            return;
+        }
+        if (batch != null) batch.add(update);
+        else {
+            List<Runnable> single = new ArrayList<>(1);
+            single.add(update);
+            submit(single);
+        }
+    }
+
+    /**
+     * Waits until all the submitted changes are shown.
+     */
+    void awaitShown() throws InterruptedException {
+        synchronized (this) {
+            waiter = Thread.currentThread();
+        }
+        // parking (rather than waiting on the monitor) lets the deterministic workers run the loop meanwhile
+        while (isRunning()) {
+            env.workers.park(this);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void submit(List<Runnable> updates) {
+        pending.add(updates);
+        if (running) return;
+
+        // the loop ends when there is nothing left to show, so an idle game holds no thread for it
+        running = true;
+        env.workers.create("dealing", this::run).start();
+    }
+
+    private void run() {
+        while (true) {
+            List<Runnable> updates;
+            synchronized (this) {
+                updates = pending.poll();
+                if (updates == null) {
+                    running = false;
+                    env.workers.unpark(waiter);
+                    return;
+                }
+            }
+            for (Runnable update : updates) {
+                try {
+                    env.workers.sleep(env.config.tableDelayMillis);
+                } catch (InterruptedException ignored) {}
+                update.run();
+            }
+        }
+    }
+}
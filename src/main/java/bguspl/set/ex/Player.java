@@ -1,11 +1,11 @@
 package bguspl.set.ex;
 
-import java.util.LinkedList;
-import java.util.Random;
+import java.util.Arrays;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import bguspl.set.Env;
+import bguspl.set.Workers;
 
 /**
  * This class manages the players' threads and data
@@ -33,12 +33,17 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    protected Thread playerThread;
+    protected volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private volatile Thread aiThread;
+
+    /**
+     * The worker running the AI (computer) player loop.
+     */
+    private Workers.Worker aiWorker;
 
     /**
      * True iff the player is human (not a computer player).
@@ -53,16 +58,45 @@ public class Player implements Runnable {
     /**
      * The current score of the player.
      */
-    private int score;
+    private volatile int score;
 
     private final long SECOND = 1000;
 
+    /**
+     * A key press waiting to be performed, with the time it was made at (0 when not measuring), so the two are
+     * added and removed together.
+     */
+    static final class KeyPress {
+        final int slot;
+        final long time;
+
+        KeyPress(int slot, long time) {
+            this.slot = slot;
+            this.time = time;
+        }
+    }
+
     ///
-    protected ConcurrentLinkedQueue<Integer> actionsToPerform;
-    protected LinkedList<Integer> myCards;
+    protected ConcurrentLinkedQueue<KeyPress> actionsToPerform;
+    // when measuring, the time of the last key press performed
+    private long lastPressTime;
+    // the cards the player placed its tokens on are the first `selected` entries. the dealer takes cards away from
+    // the selection while the player toggles others, so both are guarded by the array
+    private final int[] selection;
+    private int selected;
     private Dealer dealer;
-    public int legalset;
+    public volatile int legalset;
     protected volatile boolean isFrozen;
+    // true from the moment the selection is full until the player is done with the verdict (or the cards were taken)
+    volatile boolean awaitingVerdict;
+    // true once the player (and its AI) started, the dealer waits for it before starting the next player
+    volatile boolean started;
+    // the milliseconds left of the freeze (set with isFrozen), and true from a legal verdict until the point is
+    // counted, so a snapshot of the game loses neither
+    volatile long freezeLeft;
+    volatile boolean pointPending;
+    // true iff a restored selection waits for a verdict, so the player submits it again
+    volatile boolean resubmit;
     ///
 
     /**
@@ -81,7 +115,8 @@ public class Player implements Runnable {
         this.human = human;
         this.dealer = dealer;
         this.actionsToPerform = new ConcurrentLinkedQueue<>();
-        this.myCards = new LinkedList<>();
+        this.selection = new int[env.config.featureSize];
+        this.selected = 0;
         this.legalset = 2;
         this.isFrozen = false;
     }
@@ -94,81 +129,104 @@ public class Player implements Runnable {
         playerThread = Thread.currentThread();
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
         if (!human) createArtificialIntelligence();
-        synchronized(dealer){dealer.notify();}
+        started = true;
+        env.workers.unpark(dealer.dealerThread());
+        // the rest of a freeze the player had in a restored game
+        if (isFrozen) {
+            freeze(freezeLeft);
+            if (!human) env.workers.unpark(aiThread);
+        }
 
         while (!terminate) 
         {
             
-                 synchronized(playerThread){
-                     while(actionsToPerform.size() == 0 && !terminate){
-                         try{playerThread.wait();} catch(InterruptedException e){break;}
-                     }
+                 // parking (rather than waiting on a monitor) does not pin the carrier of a virtual thread
+                 while(actionsToPerform.size() == 0 && !resubmit && !terminate){
+                     env.workers.park(this);
+                     if(Thread.interrupted()) break;
                  }
+                 resubmit = false;
 
 
-                synchronized(table){if(!terminate) performAction();}
-
-                if(myCards.size() == env.config.featureSize){
-                    synchronized(dealer){
+                if(!terminate && !actionsToPerform.isEmpty()) performAction();
 
-                        dealer.submitCards(this);
+                if(selectedCount() == env.config.featureSize){
+                    long pressTime = lastPressTime;
+                    dealer.submitCards(this);
 
-                        while(myCards.size() == env.config.featureSize && legalset == 2 && !terminate)
-                        {
-                            dealer.notifyAll();
-                            try{dealer.wait();} catch(InterruptedException e){break;}
-                        }
+                    // the dealer unparks this player alone once the verdict is given (or the cards were taken away)
+                    while(selectedCount() == env.config.featureSize && legalset == 2 && !terminate)
+                    {
+                        env.workers.park(dealer);
+                        if(Thread.interrupted()) break;
+                    }
 
-                        }
-                        if(legalset == 0) try{penalty();} catch(InterruptedException e){break;}
-                        if(legalset == 1) try{point();} catch(InterruptedException e){break;}
-                        if(legalset != 2) actionsToPerform.clear();
+                    if(legalset != 2) env.stats.verdict(pressTime);
+                    if(legalset == 0) try{penalty();} catch(InterruptedException e){break;}
+                    if(legalset == 1) try{point();} catch(InterruptedException e){break;}
+                    if(legalset != 2) actionsToPerform.clear();
+                    awaitingVerdict = false;
                 }
 
                 legalset = 2; 
 
-                if(!human) synchronized(aiThread){aiThread.notify();}
+                if(!human) env.workers.unpark(aiThread);
             }
-        if (!human) try { aiThread.interrupt(); aiThread.join(); } catch (InterruptedException ignored) {}
+        if (!human) try { aiWorker.interrupt(); aiWorker.join(); } catch (InterruptedException ignored) {}
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
 
     }
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses, chosen by the configured BotStrategy. If the queue of key presses is full, the thread waits until
+     * it is not full. While the player cannot take a key press (see busy), the thread waits until it can.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        aiWorker = env.workers.create("computer-" + id, () -> {
+            aiThread = Thread.currentThread();
             env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
             
-            Random rnd = new Random();
+            BotStrategy bot = BotStrategy.create(env, table, this, env.config.random(id));
 
             while (!terminate) {
-            try{
-                synchronized(aiThread){
-                    while(actionsToPerform.size() == 3 || isFrozen){
-                        aiThread.wait();
-                    }
+                while((actionsToPerform.size() == 3 || isFrozen) && !terminate){
+                    env.workers.park(this);
                 }
-                int key = rnd.nextInt(env.config.playerKeys(id).length);
-                keyPressed(key);
-            }
-            catch (InterruptedException ignored) {}
+                int slot;
+                try{slot = bot.nextSlot();} catch(InterruptedException e){break;}
+                if(slot != Table.EMPTY) keyPressed(slot);
+                // a busy player unparks this thread once it can take a key press again, so the thread does not spin
+                // (virtual threads are never preempted, a spinning one keeps the others off its carrier)
+                if(busy()) env.workers.park(this);
+                else env.workers.yieldTurn();
             }
             env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
-        aiThread.start();
+        });
+        aiWorker.start();
     }
 
     /**
-     * Called when the game should be terminated.
+     * @return - true iff the player cannot take a key press until it unparks its computer player (or the dealer does):
+     * it has key presses to perform, waits for a verdict, is frozen, or the dealer is dealing.
+     */
+    private boolean busy() {
+        return !actionsToPerform.isEmpty() || awaitingVerdict || isFrozen || dealer.dealing || dealer.terminate;
+    }
+
+    /**
+     * Wakes the computer player of the player (if it has one), e.g. once the dealer is done dealing.
+     */
+    void wakeComputer() {
+        if (!human) env.workers.unpark(aiThread);
+    }
+
+    /**
+     * Called when the game should be terminated (the dealer then interrupts the player's loop through its worker).
      */
     public void terminate() {
 
         terminate = true;
-        playerThread.interrupt();
     }
 
     /**
@@ -178,17 +236,16 @@ public class Player implements Runnable {
      */
     public void keyPressed(int slot) {
 
-        if(dealer.dealing || table.getCard(slot) == null || isFrozen || dealer.terminate) return;
+        int card = table.cardAt(slot);
+        if(dealer.dealing || card == Table.EMPTY || isFrozen || dealer.terminate) return;
 
-        if(myCards.size() == 3 && !myCards.contains(table.getCard(slot))) return; 
+        if(selectedCount() == env.config.featureSize && !isSelected(card)) return;
 
         if(actionsToPerform.size() < 3)
         {
-            actionsToPerform.add(slot);
+            actionsToPerform.add(new KeyPress(slot, env.stats.enabled ? env.stats.now() : 0));
 
-        synchronized(playerThread){
-            playerThread.notify();
-        }
+            env.workers.unpark(playerThread);
     }
     }
 
@@ -201,30 +258,34 @@ public class Player implements Runnable {
     public void point() throws InterruptedException{
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
 
-        env.ui.setScore(id, ++score);
-        
-        long freezeTime = env.config.pointFreezeMillis;
-        while(freezeTime > 0 && !terminate){
-            env.ui.setFreeze(id, freezeTime);
-            try{playerThread.sleep(Math.min(SECOND, freezeTime));} catch(InterruptedException e){return;}
-            freezeTime -= 1000;
+        synchronized (selection) {
+            ++score;
+            pointPending = false;
         }
-        isFrozen = false;
-        env.ui.setFreeze(id, 0);
+        env.ui.setScore(id, score);
+        env.events.score(id, score);
+        freeze(env.config.pointFreezeMillis);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() throws InterruptedException{
+        freeze(env.config.penaltyFreezeMillis);
+    }
+
+    private void freeze(long millis) {
+        long frozenSince = env.stats.now();
 
-        long freezeTime = env.config.penaltyFreezeMillis;
-        while(freezeTime > 0 && !terminate){
-            env.ui.setFreeze(id, freezeTime);
-            try{playerThread.sleep(Math.min(SECOND, freezeTime));} catch(InterruptedException e){return;}
-            freezeTime -= 1000;
+        freezeLeft = millis;
+        while(freezeLeft > 0 && !terminate){
+            env.ui.setFreeze(id, freezeLeft);
+            try{env.workers.sleep(Math.min(SECOND, freezeLeft));} catch(InterruptedException e){return;}
+            freezeLeft -= 1000;
         }
+        freezeLeft = 0;
         isFrozen = false;
+        env.stats.frozen(id, frozenSince);
         env.ui.setFreeze(id, 0);
     }
 
@@ -232,23 +293,118 @@ public class Player implements Runnable {
         return score;
     }
 
+    /**
+     * @return - the score of the player, counting a point it was given and did not count yet.
+     */
+    int settledScore() {
+        synchronized (selection) {
+            return score + (pointPending ? 1 : 0);
+        }
+    }
+
+    /**
+     * Sets the score and the freeze of a player of a restored game (before the game starts).
+     *
+     * @param score        - the score of the player.
+     * @param freezeMillis - the number of milliseconds the player is still frozen for.
+     */
+    void restore(int score, long freezeMillis) {
+        this.score = score;
+        freezeLeft = freezeMillis;
+        isFrozen = freezeMillis > 0;
+        env.ui.setScore(id, score);
+    }
+
     public void performAction(){
-        int slot = actionsToPerform.remove();
-        
-        if(table.slotToCard[slot] == null || dealer.dealing) return;
+        // the key press leaves the queue once performed, so a computer player sees it pending until then
+        KeyPress press = actionsToPerform.element();
+        int slot = press.slot;
+        lastPressTime = press.time;
+
+        table.lockSlot(slot);
+        try {
+            int card = table.slotToCard[slot];
+            if(card == Table.EMPTY || dealer.dealing) return;
+
+            if (deselect(card)){
+                table.removeToken(id, slot);
+                env.events.tokenRemoved(id, slot);
+                env.ui.removeToken(id, slot);
+            }
+            else if (select(card)){
+                table.placeToken(id, slot);
+                env.events.tokenPlaced(id, slot);
+                env.ui.placeToken(id, slot);
+            }
+        } finally {
+            table.unlockSlot(slot);
+            actionsToPerform.poll();
+        }
+        if (!human) env.workers.unpark(aiThread);
+    }
 
-        if (myCards.contains(table.slotToCard[slot])){
-            env.ui.removeToken(id, slot);
-            myCards.remove(table.slotToCard[slot]);
+    /**
+     * @return - the number of cards the player placed its tokens on.
+     */
+    public int selectedCount() {
+        synchronized (selection) {
+            return selected;
         }
-        else if (myCards.size() < env.config.featureSize){
-            env.ui.placeToken(id, slot);
-            myCards.add(table.slotToCard[slot]);
+    }
+
+    /**
+     * @return - a copy of the cards the player placed its tokens on.
+     */
+    public int[] selectedCards() {
+        synchronized (selection) {
+            return Arrays.copyOf(selection, selected);
         }
-        if (!human){
-            synchronized(aiThread){
-                aiThread.notify();
-            }
+    }
+
+    /**
+     * @param card - the card to look for.
+     * @return - true iff the player placed a token on the card.
+     */
+    public boolean isSelected(int card) {
+        synchronized (selection) {
+            return indexOf(card) >= 0;
+        }
+    }
+
+    /**
+     * Adds a card to the selection, unless it is already selected or the selection is full.
+     *
+     * @param card - the card to add.
+     * @return - true iff the card was added.
+     */
+    boolean select(int card) {
+        synchronized (selection) {
+            if (selected == selection.length || indexOf(card) >= 0) return false;
+            selection[selected++] = card;
+            if (selected == selection.length) awaitingVerdict = true;
+            return true;
         }
     }
+
+    /**
+     * Removes a card from the selection.
+     *
+     * @param card - the card to remove.
+     * @return - true iff the card was selected.
+     */
+    boolean deselect(int card) {
+        synchronized (selection) {
+            int i = indexOf(card);
+            if (i < 0) return false;
+            selection[i] = selection[--selected];
+            return true;
+        }
+    }
+
+    private int indexOf(int card) {
+        for (int i = 0; i < selected; ++i)
+            if (selection[i] == card)
+                return i;
+        return -1;
+    }
 }
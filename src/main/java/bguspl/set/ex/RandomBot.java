@@ -0,0 +1,22 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * Presses random keys (so most of its sets are illegal).
+ */
+class RandomBot implements BotStrategy {
+
+    private final int slots;
+    private final Random random;
+
+    RandomBot(int slots, Random random) {
+        this.slots = slots;
+        this.random = random;
+    }
+
+    @Override
+    public int nextSlot() {
+        return random.nextInt(slots);
+    }
+}
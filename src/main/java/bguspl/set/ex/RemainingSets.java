@@ -0,0 +1,127 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class counts the legal sets that can still be formed from the cards that were not collected yet (i.e. the
+ * cards in the deck and on the table), so the dealer can tell that the game is over without searching for a set.
+ *
+ * @inv count() == the number of legal sets made only of cards that were not collected
+ * @inv setsWith(card) == 0 for every collected card
+ */
+class RemainingSets {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * True iff the card was not collected yet.
+     */
+    private final boolean[] live;
+
+    /**
+     * The number of remaining sets each card is a part of.
+     */
+    private final int[] setsPerCard;
+
+    /**
+     * The number of remaining sets.
+     */
+    private int sets;
+
+    /**
+     * The constructor. All the cards of the deck start as not collected.
+     *
+     * @param env - the game environment object.
+     */
+    RemainingSets(Env env) {
+        this.env = env;
+        this.live = new boolean[env.config.deckSize];
+        this.setsPerCard = new int[env.config.deckSize];
+
+        List<Integer> deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck.forEach(card -> live[card] = true);
+        for (int[] set : env.util.findSets(deck, Integer.MAX_VALUE)) {
+            for (int card : set)
+                ++setsPerCard[card];
+            ++sets;
+        }
+    }
+
+    /**
+     * @return - the number of legal sets that can still be formed.
+     */
+    int count() {
+        return sets;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the number of remaining sets the card is a part of.
+     */
+    int setsWith(int card) {
+        return setsPerCard[card];
+    }
+
+    /**
+     * Removes a card from the game, along with every remaining set it was a part of.
+     *
+     * @param card - the collected card.
+     * @post - setsWith(card) == 0
+     */
+    void collect(int card) {
+        if (!live[card]) return;
+        live[card] = false;
+        if (setsPerCard[card] == 0) return;
+
+        // only cards that are still a part of some set can complete a set with this card
+        int r = env.config.featureSize - 1;
+        int[] others = IntStream.range(0, live.length).filter(other -> live[other] && setsPerCard[other] > 0).toArray();
+        int n = others.length;
+        if (r < 1 || n < r) return;
+
+        // when the last card of a set is determined by the others (featureSize >= 3), the largest other card is not
+        // chosen but looked up (see Table::addSetsWith)
+        boolean complete = r > 1;
+        if (complete) {
+            --r;
+            --n;
+        }
+
+        int[] combination = new int[r];
+        int[] candidate = new int[r + 1];
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+        candidate[r] = card;
+
+        while (combination[r - 1] < n && setsPerCard[card] > 0) {
+            for (int i = 0; i < r; ++i)
+                candidate[i] = others[combination[i]];
+            if (complete) {
+                int last = env.util.completeSet(candidate);
+                if (last > candidate[r - 1] && live[last] && setsPerCard[last] > 0) {
+                    for (int member : candidate)
+                        --setsPerCard[member];
+                    --setsPerCard[last];
+                    --sets;
+                }
+            } else if (env.util.testSet(candidate)) {
+                for (int member : candidate)
+                    --setsPerCard[member];
+                --sets;
+            }
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * Goes for the legal sets on the table, like a person would: it takes config.botReactionMillis to spot a set, and
+ * with a probability of 1 - config.botAccuracy it goes for a wrong one (a legal set with one card swapped). It first
+ * takes its tokens off the cards that are not in the chosen set, then places them on the cards of the set.
+ * The presses are planned by card, so a press is dropped (and the next set is chosen) once one of the cards left the
+ * table. A new plan is made only when the player is idle: all the presses were performed, and it is not waiting for
+ * a verdict.
+ */
+class SolverBot implements BotStrategy {
+
+    private final Env env;
+    private final Table table;
+    private final Player player;
+    private final Random random;
+
+    /**
+     * The cards to press, in order.
+     */
+    private final Queue<Integer> plan = new ArrayDeque<>();
+
+    SolverBot(Env env, Table table, Player player, Random random) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.random = random;
+    }
+
+    @Override
+    public int nextSlot() throws InterruptedException {
+        if (plan.isEmpty() && !plan()) return Table.EMPTY;
+        int slot = table.slotOf(plan.poll());
+        if (slot == Table.EMPTY) plan.clear();
+        return slot;
+    }
+
+    /**
+     * Chooses the next set to go for.
+     *
+     * @return - true iff there is something to press.
+     */
+    private boolean plan() throws InterruptedException {
+        if (!player.actionsToPerform.isEmpty() || player.awaitingVerdict) return false;
+        List<int[]> sets = table.sets();
+        if (sets.isEmpty()) {
+            // wait for the dealer to deal new cards
+            env.workers.sleep(Math.max(1, env.config.botReactionMillis));
+            return false;
+        }
+        env.workers.sleep(env.config.botReactionMillis);
+
+        int[] set = sets.get(random.nextInt(sets.size())).clone();
+        if (random.nextDouble() >= env.config.botAccuracy) swapCard(set);
+
+        for (int card : player.selectedCards())
+            if (Arrays.stream(set).noneMatch(c -> c == card)) plan.add(card);
+        for (int card : set)
+            if (!player.isSelected(card)) plan.add(card);
+        return !plan.isEmpty();
+    }
+
+    /**
+     * Replaces a random card of a set by another card on the table (if there is one), so the set is not legal.
+     */
+    private void swapCard(int[] set) {
+        int start = random.nextInt(env.config.tableSize);
+        for (int i = 0; i < env.config.tableSize; ++i) {
+            int card = table.cardAt((start + i) % env.config.tableSize);
+            if (card != Table.EMPTY && Arrays.stream(set).noneMatch(c -> c == card)) {
+                set[random.nextInt(set.length)] = card;
+                return;
+            }
+        }
+    }
+}
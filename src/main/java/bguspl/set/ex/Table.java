@@ -2,15 +2,21 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv countCards() == the number of slots x such that slotToCard[x] != EMPTY
  */
 public class Table {
 
@@ -20,29 +26,81 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Marks an empty slot in slotToCard, and a card that is not on the table in cardToSlot.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    public static final int EMPTY = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] slotToCard; // card per slot (if any)
 
-   // protected LinkedList<Integer>[] tokensOnSlots;
+    /**
+     * Mapping between a card and the slot it is in (EMPTY if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * The number of cards on the table.
+     */
+    private final AtomicInteger cardCount;
+
+    /**
+     * A bit per slot, set iff a card is placed in the slot.
+     */
+    private final AtomicLongArray occupied;
+
+    /**
+     * The players that placed a token on each slot: bit p of tokens[slot] is set iff player p has a token on the slot.
+     * Guarded by the lock of the slot.
+     */
+    private final long[][] tokens;
+
+    /**
+     * The legal sets currently on the table (sorted card ids), kept up to date by placeCard and removeCard.
+     */
+    private final List<int[]> sets;
+
+    /**
+     * A lock per slot: a player toggling a token locks only the slot it touches, and the dealer locks only the slots
+     * it is changing.
+     */
+    private final ReentrantLock[] slotLocks;
+
+    /**
+     * Shows the placed and removed cards on the user interface, at the configured pace.
+     */
+    private final DealingPipeline dealing;
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (EMPTY if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (EMPTY if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
 
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+        this.cardCount = new AtomicInteger();
+        this.occupied = new AtomicLongArray((slotToCard.length + Long.SIZE - 1) / Long.SIZE);
+        this.sets = new LinkedList<>();
+        this.tokens = new long[slotToCard.length][(env.config.players + Long.SIZE - 1) / Long.SIZE];
+        this.slotLocks = new ReentrantLock[slotToCard.length];
+        Arrays.setAll(slotLocks, slot -> new ReentrantLock());
+        this.dealing = new DealingPipeline(env);
+
+        int[] cards = new int[slotToCard.length];
+        int count = 0;
+        for (int slot = 0; slot < slotToCard.length; ++slot)
+            if (slotToCard[slot] != EMPTY) {
+                setOccupied(slot, true);
+                addSetsWith(slotToCard[slot], cards, count);
+                cards[count++] = slotToCard[slot];
+            }
+        cardCount.set(count);
     }
 
     /**
@@ -52,15 +110,20 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyMapping(env.config.tableSize), emptyMapping(env.config.deckSize));
+    }
+
+    private static int[] emptyMapping(int size) {
+        int[] mapping = new int[size];
+        Arrays.fill(mapping, EMPTY);
+        return mapping;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        sets().forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
@@ -74,11 +137,65 @@ public class Table {
      * @return - the number of cards on the table.
      */
     public int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+        return cardCount.get();
+    }
+
+    /**
+     * @param slot - the slot to look at.
+     * @return - the card placed in the slot, or EMPTY if the slot is empty.
+     */
+    public int cardAt(int slot) {
+        return slotToCard[slot];
+    }
+
+    /**
+     * @param card - the card to look for.
+     * @return - the slot the card is placed in, or EMPTY if the card is not on the table.
+     */
+    public int slotOf(int card) {
+        return cardToSlot[card];
+    }
+
+    /**
+     * Finds the first slot holding a card, starting from a given slot.
+     *
+     * @param from - the first slot to check.
+     * @return - the first occupied slot that is not smaller than from, or EMPTY if there is none.
+     */
+    public int nextOccupiedSlot(int from) {
+        return nextSlot(from, true);
+    }
+
+    /**
+     * Finds the first empty slot, starting from a given slot.
+     *
+     * @param from - the first slot to check.
+     * @return - the first empty slot that is not smaller than from, or EMPTY if there is none.
+     */
+    public int nextEmptySlot(int from) {
+        return nextSlot(from, false);
+    }
+
+    private int nextSlot(int from, boolean taken) {
+        if (from < 0) from = 0;
+        for (int word = from / Long.SIZE; word < occupied.length(); ++word) {
+            long bits = taken ? occupied.get(word) : ~occupied.get(word);
+            if (word == from / Long.SIZE) bits &= -1L << (from % Long.SIZE);
+            if (bits != 0) {
+                int slot = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                return slot < slotToCard.length ? slot : EMPTY;
+            }
+        }
+        return EMPTY;
+    }
+
+    private void setOccupied(int slot, boolean taken) {
+        int word = slot / Long.SIZE;
+        long bit = 1L << (slot % Long.SIZE);
+        long bits;
+        do {
+            bits = occupied.get(word);
+        } while (!occupied.compareAndSet(word, bits, taken ? bits | bit : bits & ~bit));
     }
 
     /**
@@ -87,36 +204,287 @@ public class Table {
      * @param slot - the slot in which the card should be placed.
      *
      * @post - the card placed is on the table, in the assigned slot.
+     * @post - the card is shown on the user interface after config.tableDelayMillis (asynchronously).
      */
     public void placeCard(int card, int slot) {
+        lockSlot(slot);
         try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+            int replaced = slotToCard[slot];
+            if (replaced != EMPTY) {
+                removeSetsWith(replaced);
+                cardToSlot[replaced] = EMPTY;
+                Arrays.fill(tokens[slot], 0L);
+            }
+            int[] others = new int[cardCount.get()];
+            int count = 0;
+            for (int i = nextOccupiedSlot(0); i != EMPTY && count < others.length; i = nextOccupiedSlot(i + 1))
+                if (i != slot)
+                    others[count++] = slotToCard[i];
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-        env.ui.placeCard(card, slot);
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            if (replaced == EMPTY) {
+                setOccupied(slot, true);
+                cardCount.incrementAndGet();
+            }
+            long start = env.stats.now();
+            addSetsWith(card, others, count);
+            env.stats.indexedSets(start);
+            env.events.cardPlaced(card, slot);
+            dealing.show(() -> env.ui.placeCard(card, slot));
+        } finally {
+            unlockSlot(slot);
+        }
     }
 
     /**
      * Removes a card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
+     *
+     * @post - the slot is empty, and is shown empty on the user interface after config.tableDelayMillis (asynchronously).
      */
     public void removeCard(int slot) {
+        lockSlot(slot);
         try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-        env.ui.removeCard(slot);
-        int card = slotToCard[slot];
-        cardToSlot[card] = null;
-        slotToCard[slot] = null;
+            int card = slotToCard[slot];
+            if (card == EMPTY) return;
+            dealing.show(() -> env.ui.removeCard(slot));
+            cardToSlot[card] = EMPTY;
+            slotToCard[slot] = EMPTY;
+            Arrays.fill(tokens[slot], 0L);
+            setOccupied(slot, false);
+            cardCount.decrementAndGet();
+            removeSetsWith(card);
+            env.events.cardRemoved(slot);
+        } finally {
+            unlockSlot(slot);
+        }
+    }
+
+    /**
+     * Marks that a player placed a token on a slot. The caller must hold the lock of the slot.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot the token is placed on.
+     */
+    public void placeToken(int player, int slot) {
+        tokens[slot][player / Long.SIZE] |= 1L << (player % Long.SIZE);
+    }
+
+    /**
+     * Marks that a player removed its token from a slot. The caller must hold the lock of the slot.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot the token is removed from.
+     */
+    public void removeToken(int player, int slot) {
+        tokens[slot][player / Long.SIZE] &= ~(1L << (player % Long.SIZE));
+    }
+
+    /**
+     * Finds the next player with a token on a slot. The caller must hold the lock of the slot.
+     *
+     * @param slot - the slot to look at.
+     * @param from - the first player id to check.
+     * @return - the smallest id, not smaller than from, of a player with a token on the slot, or EMPTY if there is none.
+     */
+    public int nextPlayerOnSlot(int slot, int from) {
+        long[] players = tokens[slot];
+        for (int word = from / Long.SIZE; word < players.length; ++word) {
+            long bits = players[word];
+            if (word == from / Long.SIZE) bits &= -1L << (from % Long.SIZE);
+            if (bits != 0)
+                return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Groups the following card placements and removals into one batch on the user interface (e.g. a reshuffle),
+     * until endDealing is called.
+     */
+    void beginDealing() {
+        dealing.beginBatch();
+    }
+
+    /**
+     * Hands the batch started by beginDealing to the user interface.
+     */
+    void endDealing() {
+        dealing.endBatch();
+    }
+
+    /**
+     * Waits until all the card placements and removals are shown on the user interface.
+     */
+    void awaitDealt() throws InterruptedException {
+        dealing.awaitShown();
+    }
+
+    /**
+     * Locks a slot, so its card and the tokens on it do not change until it is unlocked.
+     *
+     * @param slot - the slot to lock.
+     */
+    public void lockSlot(int slot) {
+        if (!env.stats.enabled) {
+            slotLocks[slot].lock();
+        } else if (!slotLocks[slot].tryLock()) {
+            // only waiting for a lock held by another thread is measured
+            long start = env.stats.now();
+            slotLocks[slot].lock();
+            env.stats.slotLockWaited(start);
+        }
+    }
+
+    /**
+     * @param slot - the slot to unlock.
+     */
+    public void unlockSlot(int slot) {
+        slotLocks[slot].unlock();
+    }
+
+    /**
+     * Locks several slots. The slots are always locked in ascending order, so two threads locking overlapping slots
+     * cannot deadlock.
+     *
+     * @param slots - the slots to lock.
+     */
+    public void lockSlots(int[] slots) {
+        int[] sorted = slots.clone();
+        Arrays.sort(sorted);
+        for (int slot : sorted)
+            lockSlot(slot);
+    }
+
+    /**
+     * @param slots - the slots to unlock.
+     */
+    public void unlockSlots(int[] slots) {
+        for (int slot : slots)
+            unlockSlot(slot);
+    }
+
+    /**
+     * Checks if there is a legal set on the table.
+     *
+     * @return - true iff at least one legal set is on the table.
+     */
+    public boolean hasSet() {
+        synchronized (sets) {
+            return !sets.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the legal sets currently on the table.
+     *
+     * @return - a copy of the list of sets on the table, each one contains the (sorted) card ids of a legal set.
+     */
+    public List<int[]> sets() {
+        synchronized (sets) {
+            return new ArrayList<>(sets);
+        }
+    }
+
+    /**
+     * Adds to the index every legal set made of the given card and cards that are already on the table.
+     * When the last card of a set is determined by the others (featureSize >= 3), only the other cards but the
+     * largest one are chosen, and the card that completes them (see Util::completeSet) is looked up on the table.
+     *
+     * @param card   - the card that was added to the table.
+     * @param others - the other cards on the table.
+     * @param n      - the number of cards in others.
+     */
+    private void addSetsWith(int card, int[] others, int n) {
+        int r = env.config.featureSize - 1;
+        if (r < 1 || n < r) return;
+
+        int[] sorted = Arrays.copyOf(others, n);
+        Arrays.sort(sorted);
+        boolean complete = r > 1;
+        if (complete) {
+            // the largest card is the completing one, so it is never chosen
+            --r;
+            --n;
+        }
+
+        int[] combination = new int[r];
+        int[] candidate = new int[r + 1];
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+        candidate[r] = card;
+
+        List<int[]> found = new LinkedList<>();
+        while (combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                candidate[i] = sorted[combination[i]];
+            if (complete) {
+                int last = env.util.completeSet(candidate);
+                if (last > candidate[r - 1] && Arrays.binarySearch(sorted, last) >= 0) {
+                    int[] set = Arrays.copyOf(candidate, r + 2);
+                    set[r + 1] = last;
+                    Arrays.sort(set);
+                    found.add(set);
+                }
+            } else if (env.util.testSet(candidate)) {
+                int[] set = candidate.clone();
+                Arrays.sort(set);
+                found.add(set);
+            }
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+
+        if (!found.isEmpty())
+            synchronized (sets) {
+                sets.addAll(found);
+            }
+    }
+
+    /**
+     * Removes from the index every set that contains the given card.
+     *
+     * @param card - the card that was removed from the table.
+     */
+    private void removeSetsWith(int card) {
+        synchronized (sets) {
+            Iterator<int[]> it = sets.iterator();
+            while (it.hasNext())
+                if (Arrays.binarySearch(it.next(), card) >= 0)
+                    it.remove();
+        }
     }
 
+    /**
+     * @param slot - the slot to look at.
+     * @return - the card placed in the slot, or null if the slot is empty.
+     */
     public Integer getCard(int slot){
-        return slotToCard[slot];
+        int card = slotToCard[slot];
+        return card == EMPTY ? null : card;
+    }
+
+    /**
+     * @param card - the card to look for.
+     * @return - the slot the card is placed in, or null if the card is not on the table.
+     */
+    public Integer getSlot(int card){
+        int slot = cardToSlot[card];
+        return slot == EMPTY ? null : slot;
     }
 
+    /**
+     * @return - a copy of the mapping between a slot and the card placed in it (null if none).
+     */
     public Integer[] getSlots(){
-        return slotToCard;
+        Integer[] slots = new Integer[slotToCard.length];
+        for (int slot = 0; slot < slots.length; ++slot)
+            slots[slot] = getCard(slot);
+        return slots;
     }
 }
@@ -1,79 +1,117 @@
 package bguspl.set.ex;
+
 import bguspl.set.Env;
 
-public class Timer implements Runnable{
-    private long shuffleTime;
-    public volatile long time;
-    public volatile boolean terminate;
-    private Env env;
-    private long change;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The turn timer of the dealer. With a positive timeout it counts down to the next reshuffle, with a timeout of 0 it
+ * counts the time since the last reset, and with a negative timeout it does nothing.
+ * The times are absolute deadlines (from env.workers.nanoTime), so the countdown does not drift however late the
+ * ticks are. The ticks that show the time run every config.timerTickMillis on the shared scheduler of env.workers, and
+ * only call the user interface when the time shown changes (whole seconds, or tenths of a second in the warning time).
+ */
+public class Timer {
+
+    private final Env env;
+
+    /**
+     * The timeout in milliseconds (see Config.turnTimeoutMillis).
+     */
+    private final long shuffleTime;
+
+    /**
+     * When the countdown runs out, or when the elapsed time started (in env.workers.nanoTime).
+     */
+    private volatile long deadline;
+
+    /**
+     * True iff the countdown is running (between a resume and the time it runs out).
+     */
+    private volatile boolean counting;
 
-    public volatile boolean reset;
+    /**
+     * Cancels the ticks (null if they were not started).
+     */
+    private Runnable ticks;
 
-    public Timer(long shuffleTime, Env env){
-        this.time = shuffleTime;
+    /**
+     * The last time shown, so the user interface is called only when it changes (used by the ticks only).
+     */
+    private long shown = -1;
+
+    public Timer(long shuffleTime, Env env) {
         this.shuffleTime = shuffleTime;
         this.env = env;
-        this.terminate = false;
-        this.change = 1000;
-        if(shuffleTime == 0) change *= -1;
     }
 
-    public void run(){
-        try
-        {
-            while(!terminate)
-            {
-                while((time > 0 || shuffleTime == 0) && !terminate)
-                {
-                    if(reset)
-                    {
-                        time = shuffleTime;
-                        reset = false; 
-                    }
-
-                    if(shuffleTime == 0) {
-                        env.ui.setElapsed(time);
-                        Thread.currentThread().sleep(1000);
-                    }
-                    else
-                    {
-                        if(time > env.config.turnTimeoutWarningMillis)
-                        { 
-                            env.ui.setCountdown(time, time <= env.config.turnTimeoutWarningMillis);
-                            Thread.currentThread().sleep(1000);
-                        }
-                        else{
-                            for(int i=9; i>=0; i--)
-                            {
-                                env.ui.setCountdown(time + i * 100 - 1000, time <= env.config.turnTimeoutWarningMillis);
-                                Thread.currentThread().sleep(100); 
-                            }
-                        }
-                    }
-                
-                    time -= change;
-               }
-
-               env.ui.setCountdown(time, time <= env.config.turnTimeoutWarningMillis);
-
-                synchronized(this){
-                    wait();
-                    time = shuffleTime;
-                }
-            }
-        }
-        catch(InterruptedException e){}
-}
+    /**
+     * Starts showing the time (if there is a timeout).
+     */
+    public void start() {
+        if (shuffleTime < 0) return;
+        deadline = env.workers.nanoTime();
+        ticks = env.workers.repeat("timer", this::tick, env.config.timerTickMillis);
+    }
+
+    /**
+     * Stops showing the time.
+     */
+    public void stop() {
+        if (ticks != null) ticks.run();
+        counting = false;
+    }
 
+    /**
+     * Starts the countdown (or the elapsed time) over. Called when the cards are dealt and when a set is collected.
+     */
+    public void reset() {
+        if (shuffleTime > 0) {
+            deadline = env.workers.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shuffleTime);
+            counting = true;
+        } else deadline = env.workers.nanoTime();
+        env.events.timerReset();
+    }
 
-public boolean done(){
-    if(time > 0)
-        return true;
-    else
-    {
-        time = shuffleTime;
-        return false;
+    /**
+     * Continues the countdown (or the elapsed time) of a restored game from where it was.
+     *
+     * @param remainingNanos - the number of nanoseconds that were left (see remainingNanos).
+     */
+    public void resume(long remainingNanos) {
+        deadline = env.workers.nanoTime() + remainingNanos;
+        counting = shuffleTime > 0 && remainingNanos > 0;
+        env.events.timerReset();
+    }
+
+    /**
+     * @return - true iff the countdown is running and did not run out yet.
+     */
+    public boolean counting() {
+        if (counting && remainingNanos() <= 0) counting = false;
+        return counting;
+    }
+
+    /**
+     * @return - the number of nanoseconds until the countdown runs out (may be negative).
+     */
+    public long remainingNanos() {
+        return deadline - env.workers.nanoTime();
+    }
+
+    private void tick() {
+        if (shuffleTime == 0) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(env.workers.nanoTime() - deadline) / 1000 * 1000;
+            if (elapsed != shown) env.ui.setElapsed(elapsed);
+            shown = elapsed;
+            return;
+        }
+
+        long remaining = counting ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos())) : 0;
+        boolean warn = remaining <= env.config.turnTimeoutWarningMillis;
+        // whole seconds are rounded up, so the countdown shows the timeout first and 0 only when it ran out
+        long time = warn ? (remaining + 99) / 100 * 100 : (remaining + 999) / 1000 * 1000;
+        if (time != shown) env.ui.setCountdown(time, warn);
+        shown = time;
     }
-}
 }
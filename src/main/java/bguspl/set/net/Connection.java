@@ -0,0 +1,58 @@
+package bguspl.set.net;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client connected to the game server. The game threads add frames to its outgoing queue, and only the event loop
+ * of the server reads and writes its channel.
+ */
+class Connection {
+
+    final SocketChannel channel;
+    SelectionKey key;
+
+    /**
+     * The bytes that arrived and were not handled yet (in write mode).
+     */
+    final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_FRAME * 2);
+
+    /**
+     * The frames waiting to be written, and their number.
+     */
+    final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+    final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * True iff the connection is in the server's queue of connections to write.
+     */
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The frames being written (used by the event loop only).
+     */
+    final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+
+    /**
+     * The table the client joined (null if none) and its seat (-1 if none).
+     */
+    RemoteTable table;
+    int seat = -1;
+
+    volatile boolean closed;
+
+    Connection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public String toString() {
+        return "client " + channel.socket().getRemoteSocketAddress();
+    }
+}
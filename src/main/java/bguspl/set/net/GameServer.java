@@ -0,0 +1,295 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import bguspl.set.GameEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts any number of tables (games) for remote players. The clients connect over TCP and speak the binary Protocol:
+ * each joins a table, taking the seat of one of its human players, and sends key presses; the server sends every
+ * change of the table's user interface back to the clients of the table.
+ * A single event loop thread (on a Selector) accepts the clients, reads their key presses and writes the frames the
+ * games queued for them. The game threads never touch the sockets: they queue the frames, and wake the loop up only
+ * if it is not about to write anyway. The frames of a client are written in batches (gathering writes), and a client
+ * that falls too far behind is disconnected rather than slowing the server down.
+ */
+public class GameServer implements Closeable {
+
+    /**
+     * The largest number of frames waiting to be written to a client.
+     */
+    private static final int MAX_QUEUED = 1 << 14;
+
+    /**
+     * The largest number of frames in a single write.
+     */
+    private static final int BATCH = 64;
+
+    final Logger logger;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<RemoteTable> tables = new ArrayList<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private final Queue<Connection> toWrite = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakingUp = new AtomicBoolean();
+    private final Thread loop;
+    private volatile boolean closed;
+
+    /**
+     * Whether the event loop was started, and the number of games that were started (the first ones).
+     */
+    private boolean loopStarted;
+    private int gamesStarted;
+
+    /**
+     * @param logger  - the logger of the server and its games.
+     * @param config  - the configuration of the games (the human players are the seats of each table).
+     * @param tables  - the number of tables.
+     * @param address - the address to listen on (port 0 for any free port).
+     */
+    public GameServer(Logger logger, Config config, int tables, InetSocketAddress address) throws IOException {
+        this.logger = logger;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        for (int i = 0; i < tables; ++i)
+            this.tables.add(new RemoteTable(i, this, config));
+        loop = new Thread(this::run, "server");
+    }
+
+    /**
+     * @return - the port the server listens on.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return - the games of the tables.
+     */
+    public List<GameEngine> games() {
+        List<GameEngine> games = new ArrayList<>();
+        tables.forEach(table -> games.add(table.game));
+        return games;
+    }
+
+    /**
+     * Starts accepting clients, and starts the games.
+     */
+    public synchronized void start() {
+        loop.start();
+        loopStarted = true;
+        for (RemoteTable table : tables) {
+            table.game.start();
+            ++gamesStarted;
+        }
+    }
+
+    /**
+     * Terminates the games and disconnects the clients (a server that was not started, or only in part, is closed as
+     * far as it got).
+     */
+    @Override
+    public synchronized void close() {
+        for (int i = 0; i < tables.size(); ++i) {
+            GameEngine game = tables.get(i).game;
+            game.terminate();
+            if (i >= gamesStarted) continue;
+            try {
+                game.join(0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closed = true;
+        if (!loopStarted) {
+            // the loop closes the channels when it ends, but it never ran
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {}
+            return;
+        }
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a frame to a client (called by the game threads).
+     */
+    void send(Connection client, ByteBuffer frame) {
+        if (client.closed) return;
+        client.queued.incrementAndGet();
+        client.out.add(frame);
+        if (client.scheduled.compareAndSet(false, true)) {
+            toWrite.add(client);
+            if (wakingUp.compareAndSet(false, true)) selector.wakeup();
+        }
+    }
+
+    private void run() {
+        Protocol.Reader reader = new Protocol.Reader();
+        try {
+            while (!closed) {
+                selector.select();
+                wakingUp.set(false);
+
+                Connection client;
+                while ((client = toWrite.poll()) != null) {
+                    client.scheduled.set(false);
+                    write(client);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        client = (Connection) key.attachment();
+                        if (key.isReadable()) read(client, reader);
+                        if (key.isValid() && key.isWritable()) write(client);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("server stopped: " + e);
+        } finally {
+            new ArrayList<>(connections).forEach(client -> drop(client, null));
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection client = new Connection(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            connections.add(client);
+        }
+    }
+
+    private void read(Connection client, Protocol.Reader reader) {
+        try {
+            if (client.channel.read(client.in) < 0) {
+                drop(client, null);
+                return;
+            }
+            client.in.flip();
+            while (reader.next(client.in))
+                handle(client, reader);
+            client.in.compact();
+        } catch (IOException | IllegalArgumentException e) {
+            drop(client, e);
+        }
+    }
+
+    private void handle(Connection client, Protocol.Reader message) {
+        switch (message.type) {
+            case Protocol.JOIN:
+                int table = message.intValue(0);
+                if (client.table == null && (table < 0 || table >= tables.size() || !tables.get(table).join(client)))
+                    send(client, Protocol.frame(Protocol.FULL, table));
+                break;
+            case Protocol.PRESS:
+                if (client.table != null) client.table.press(client, message.intValue(0));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown message type " + message.type);
+        }
+    }
+
+    private void write(Connection client) {
+        if (client.closed) return;
+        if (client.queued.get() > MAX_QUEUED) {
+            drop(client, new IllegalStateException("too many frames waiting to be written"));
+            return;
+        }
+        try {
+            ByteBuffer frame;
+            while (client.writing.size() < BATCH && (frame = client.out.poll()) != null) {
+                client.queued.decrementAndGet();
+                client.writing.add(frame);
+            }
+            while (!client.writing.isEmpty()) {
+                ByteBuffer[] batch = client.writing.toArray(new ByteBuffer[0]);
+                client.channel.write(batch);
+                while (!client.writing.isEmpty() && !client.writing.peek().hasRemaining())
+                    client.writing.poll();
+                if (!client.writing.isEmpty()) break; // the socket is full
+                while (client.writing.size() < BATCH && (frame = client.out.poll()) != null) {
+                    client.queued.decrementAndGet();
+                    client.writing.add(frame);
+                }
+            }
+            // wait for the socket to drain only while something is left to write
+            client.key.interestOps(client.writing.isEmpty()
+                    ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            drop(client, e);
+        }
+    }
+
+    private void drop(Connection client, Exception reason) {
+        if (client.closed) return;
+        client.closed = true;
+        // a client that went away is not a problem of the server, a client that broke the protocol (or the pace) is
+        if (reason != null)
+            logger.log(reason instanceof IOException ? Level.FINE : Level.WARNING, "dropping " + client + ": " + reason);
+        connections.remove(client);
+        if (client.table != null) client.table.leave(client);
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Runs a server until all its games end.
+     *
+     * @param args - the port to listen on and the number of tables (default 7777 and 1). The games are configured by
+     *             config.properties (HumanPlayers is the number of seats of each table).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int tables = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        Logger logger = Logger.getLogger("bguspl.set.net");
+        Config config = new Config(logger, "config.properties");
+
+        GameServer server = new GameServer(logger, config, tables, new InetSocketAddress(port));
+        logger.info("serving " + tables + " tables on port " + server.port());
+        server.start();
+        for (GameEngine game : server.games())
+            logger.info(game.join(0).toString());
+        server.close();
+    }
+}
@@ -0,0 +1,263 @@
+package bguspl.set.net;
+
+import bguspl.set.Histogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays many remote players at once against a GameServer, to measure it. All the clients run on a single thread (on a
+ * Selector): each joins a table, and presses a random key with a card every pressIntervalMillis. The time from a key
+ * press to the server's echo of the player's token on that slot is recorded in a histogram.
+ */
+public class LoadClient {
+
+    /**
+     * The results of a run.
+     */
+    public static class Report {
+
+        public final int clients;
+        public final int welcomed;
+        public final long presses;
+        public final long frames;
+        public final long echoes;
+
+        /**
+         * Nanoseconds from a key press to the echo of the token.
+         */
+        public final Histogram echoNanos;
+
+        Report(int clients, int welcomed, long presses, long frames, long echoes, Histogram echoNanos) {
+            this.clients = clients;
+            this.welcomed = welcomed;
+            this.presses = presses;
+            this.frames = frames;
+            this.echoes = echoes;
+            this.echoNanos = echoNanos;
+        }
+
+        @Override
+        public String toString() {
+            return welcomed + "/" + clients + " clients seated, " + presses + " presses, " + frames + " frames received, "
+                    + echoes + " tokens echoed, echo " + echoNanos.summary(1e6) + " ms";
+        }
+    }
+
+    private static class Client {
+
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_FRAME * 2);
+        int player = -1;
+        boolean ended;
+        boolean[] cards;
+        long[] pressed;
+
+        /**
+         * The rest of a frame that did not fit in the socket buffer (null if none).
+         */
+        ByteBuffer pending;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final InetSocketAddress server;
+    private final int clients;
+    private final int tables;
+    private final long pressIntervalMillis;
+    private final Random random;
+
+    private int welcomed;
+    private long presses;
+    private long frames;
+    private long echoes;
+    private final Histogram echoNanos = new Histogram();
+
+    /**
+     * @param server              - the address of the server.
+     * @param clients             - the number of clients (they join the tables in turns).
+     * @param tables              - the number of tables of the server.
+     * @param pressIntervalMillis - the number of milliseconds between the key presses of a client.
+     * @param random              - chooses the keys.
+     */
+    public LoadClient(InetSocketAddress server, int clients, int tables, long pressIntervalMillis, Random random) {
+        this.server = server;
+        this.clients = clients;
+        this.tables = tables;
+        this.pressIntervalMillis = pressIntervalMillis;
+        this.random = random;
+    }
+
+    /**
+     * Connects the clients and plays for the given time (or until every game ended).
+     *
+     * @param durationMillis - the number of milliseconds to play.
+     * @return - the results.
+     */
+    public Report run(long durationMillis) throws IOException {
+        List<Client> all = new ArrayList<>();
+        Protocol.Reader reader = new Protocol.Reader();
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; ++i) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Client client = new Client(channel);
+                if (channel.connect(server)) join(client, i % tables);
+                channel.register(selector, channel.isConnected() ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, client);
+                all.add(client);
+            }
+
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            long nextPress = System.nanoTime();
+            int joined = 0;
+            while (System.nanoTime() < end && !all.stream().allMatch(client -> client.ended)) {
+                long wait = Math.min(nextPress, end) - System.nanoTime();
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Client client = (Client) key.attachment();
+                    if (key.isConnectable() && client.channel.finishConnect()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                        join(client, joined++ % tables);
+                    } else if (key.isReadable()) read(client, reader);
+                }
+
+                if (System.nanoTime() >= nextPress) {
+                    for (Client client : all)
+                        press(client);
+                    nextPress = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pressIntervalMillis);
+                }
+            }
+        } finally {
+            for (Client client : all)
+                client.channel.close();
+        }
+        return new Report(clients, welcomed, presses, frames, echoes, echoNanos);
+    }
+
+    private void join(Client client, int table) throws IOException {
+        ByteBuffer frame = Protocol.frame(Protocol.JOIN, table);
+        // a join is never skipped, it waits for the socket like the rest of a frame
+        if (!send(client, frame)) client.pending = frame;
+    }
+
+    /**
+     * Writes a frame, after the rest of a frame that did not fit in the socket buffer before (the server reads the
+     * frames back to back, so a frame is never cut short by the next one).
+     *
+     * @return - false iff nothing of the frame was written (the socket is full).
+     */
+    private boolean send(Client client, ByteBuffer frame) throws IOException {
+        if (!flush(client)) return false;
+        client.channel.write(frame);
+        if (frame.position() == 0) return false;
+        if (frame.hasRemaining()) client.pending = frame;
+        return true;
+    }
+
+    private void press(Client client) throws IOException {
+        // a join that did not fit in the socket buffer is written before the client is seated
+        if (client.ended || !flush(client) || client.player < 0) return;
+        int start = random.nextInt(client.cards.length);
+        for (int i = 0; i < client.cards.length; ++i) {
+            int slot = (start + i) % client.cards.length;
+            if (client.cards[slot]) {
+                // a press that does not fit in the socket buffer is skipped, like a key pressed while frozen
+                if (!send(client, Protocol.frame(Protocol.PRESS, slot))) return;
+                if (client.pressed[slot] == 0) client.pressed[slot] = System.nanoTime();
+                ++presses;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the rest of a frame that did not fit in the socket buffer before.
+     *
+     * @return - true iff nothing is left of it.
+     */
+    private boolean flush(Client client) throws IOException {
+        if (client.pending == null) return true;
+        client.channel.write(client.pending);
+        if (client.pending.hasRemaining()) return false;
+        client.pending = null;
+        return true;
+    }
+
+    private void read(Client client, Protocol.Reader message) throws IOException {
+        if (client.channel.read(client.in) < 0) {
+            client.ended = true;
+            return;
+        }
+        client.in.flip();
+        while (message.next(client.in)) {
+            ++frames;
+            switch (message.type) {
+                case Protocol.WELCOME:
+                    client.player = message.intValue(1);
+                    client.cards = new boolean[message.intValue(2) * message.intValue(3)];
+                    client.pressed = new long[client.cards.length];
+                    ++welcomed;
+                    break;
+                case Protocol.FULL:
+                case Protocol.END:
+                    client.ended = true;
+                    break;
+                case Protocol.PLACE_CARD:
+                    client.cards[message.intValue(1)] = true;
+                    client.pressed[message.intValue(1)] = 0;
+                    break;
+                case Protocol.REMOVE_CARD:
+                    client.cards[message.intValue(0)] = false;
+                    client.pressed[message.intValue(0)] = 0;
+                    break;
+                case Protocol.PLACE_TOKEN:
+                case Protocol.REMOVE_TOKEN:
+                    int slot = message.intValue(1);
+                    if (message.intValue(0) == client.player && client.pressed[slot] != 0) {
+                        echoNanos.record(System.nanoTime() - client.pressed[slot]);
+                        client.pressed[slot] = 0;
+                        ++echoes;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        client.in.compact();
+    }
+
+    /**
+     * Runs a load test against a server.
+     *
+     * @param args - host, port, clients, tables, seconds and the milliseconds between presses (default localhost,
+     *             7777, 8, 1, 10 and 50).
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int tables = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        long seconds = args.length > 4 ? Long.parseLong(args[4]) : 10;
+        long interval = args.length > 5 ? Long.parseLong(args[5]) : 50;
+
+        LoadClient load = new LoadClient(new InetSocketAddress(host, port), clients, tables, interval, new Random());
+        System.out.println(load.run(TimeUnit.SECONDS.toMillis(seconds)));
+    }
+}
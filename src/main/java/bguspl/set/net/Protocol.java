@@ -0,0 +1,108 @@
+package bguspl.set.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The binary protocol between the game server and its clients. A frame is the length of the rest of the frame (an
+ * unsigned short), the message type (a byte) and the arguments of the message (unsigned varints).
+ * A client joins a table and then presses keys. The server answers a join with a welcome (or with full, if every seat
+ * of the table is taken), followed by the cards on the table and the scores, and then sends every change of the
+ * table's user interface to all the clients of the table.
+ */
+final class Protocol {
+
+    /**
+     * The largest frame (including its length).
+     */
+    static final int MAX_FRAME = 1 << 12;
+
+    // client to server
+    static final byte JOIN = 1;           // table
+    static final byte PRESS = 2;          // slot
+
+    // server to client
+    static final byte WELCOME = 16;       // table, player, rows, columns, players
+    static final byte FULL = 17;          // table
+    static final byte PLACE_CARD = 18;    // card, slot
+    static final byte REMOVE_CARD = 19;   // slot
+    static final byte PLACE_TOKEN = 20;   // player, slot
+    static final byte REMOVE_TOKEN = 21;  // player, slot
+    static final byte REMOVE_TOKENS = 22; // slot + 1, or 0 for every slot
+    static final byte COUNTDOWN = 23;     // millis, 1 iff warn
+    static final byte ELAPSED = 24;       // millis
+    static final byte FREEZE = 25;        // player, millis
+    static final byte SCORE = 26;         // player, score
+    static final byte WINNERS = 27;       // players...
+    static final byte END = 28;
+
+    private Protocol() {}
+
+    /**
+     * @param type   - the message type.
+     * @param values - the arguments of the message (not negative).
+     * @return - the frame, ready to be written.
+     */
+    static ByteBuffer frame(byte type, long... values) {
+        ByteBuffer frame = ByteBuffer.allocate(3 + values.length * 10);
+        frame.position(2);
+        frame.put(type);
+        for (long value : values) {
+            while ((value & ~0x7FL) != 0) {
+                frame.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            frame.put((byte) value);
+        }
+        frame.putShort(0, (short) (frame.position() - 2));
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Reads the frames that arrived. The arguments of the last frame read are kept in the reader, so reading does
+     * not allocate.
+     */
+    static class Reader {
+
+        byte type;
+        long[] values = new long[8];
+        int count;
+
+        /**
+         * Reads the next complete frame from a buffer (in read mode). An incomplete frame is left in the buffer.
+         *
+         * @param in - the bytes that arrived.
+         * @return - true iff a frame was read.
+         * @throws IllegalArgumentException - if the bytes are not a valid frame.
+         */
+        boolean next(ByteBuffer in) {
+            if (in.remaining() < 2) return false;
+            int length = in.getShort(in.position()) & 0xFFFF;
+            if (length < 1 || length + 2 > MAX_FRAME) throw new IllegalArgumentException("bad frame length " + length);
+            if (in.remaining() < length + 2) return false;
+
+            int end = in.position() + 2 + length;
+            in.position(in.position() + 2);
+            type = in.get();
+            count = 0;
+            while (in.position() < end) {
+                long value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    if (in.position() == end || shift > 63) throw new IllegalArgumentException("bad varint");
+                    byte b = in.get();
+                    value |= (long) (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                values[count++] = value;
+            }
+            return true;
+        }
+
+        int intValue(int index) {
+            if (index >= count) throw new IllegalArgumentException("missing argument " + index + " of " + type);
+            return (int) values[index];
+        }
+    }
+}
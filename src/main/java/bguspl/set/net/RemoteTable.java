@@ -0,0 +1,179 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import bguspl.set.GameEngine;
+import bguspl.set.UserInterface;
+import bguspl.set.ex.Player;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A table of the game server: the user interface of its game, which sends every change to the clients of the table.
+ * Every frame is encoded once and shared by all the clients. The human players of the game are the seats of the
+ * table, taken by the clients that join it.
+ * The table also keeps the cards, the tokens, the scores, the freezes and the countdown (or elapsed time), so a client
+ * that joins in the middle of a game gets the state of the table first. Joining and sending a change are atomic with respect to each other, so no change is missed or
+ * sent twice.
+ */
+class RemoteTable implements UserInterface {
+
+    final int id;
+    private final GameServer server;
+    private final Config config;
+    final GameEngine game;
+    private Player[] players;
+
+    private final List<Connection> clients = new ArrayList<>();
+    private final Connection[] seats;
+    private final int[] cards;
+    private final boolean[][] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+
+    // the last countdown (and its warning) or elapsed time shown, -1 if none was
+    private long countdown = -1;
+    private boolean warn;
+    private long elapsed = -1;
+
+    RemoteTable(int id, GameServer server, Config config) {
+        this.id = id;
+        this.server = server;
+        this.config = config;
+        seats = new Connection[config.humanPlayers];
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.tableSize][config.players];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+        game = new GameEngine(server.logger, config, (util, players) -> {
+            this.players = players;
+            return this;
+        });
+    }
+
+    /**
+     * Seats a client at the table, and sends it the state of the table.
+     *
+     * @param client - the client.
+     * @return - true iff there was a free seat.
+     */
+    synchronized boolean join(Connection client) {
+        int seat = Arrays.asList(seats).indexOf(null);
+        if (seat < 0) return false;
+        seats[seat] = client;
+        client.table = this;
+        client.seat = seat;
+        clients.add(client);
+
+        server.send(client, Protocol.frame(Protocol.WELCOME, id, seat, config.rows, config.columns, config.players));
+        for (int slot = 0; slot < cards.length; ++slot)
+            if (cards[slot] >= 0) server.send(client, Protocol.frame(Protocol.PLACE_CARD, cards[slot], slot));
+        for (int slot = 0; slot < tokens.length; ++slot)
+            for (int player = 0; player < tokens[slot].length; ++player)
+                if (tokens[slot][player]) server.send(client, Protocol.frame(Protocol.PLACE_TOKEN, player, slot));
+        for (int player = 0; player < scores.length; ++player) {
+            server.send(client, Protocol.frame(Protocol.SCORE, player, scores[player]));
+            if (freezes[player] > 0) server.send(client, Protocol.frame(Protocol.FREEZE, player, freezes[player]));
+        }
+        if (countdown >= 0) server.send(client, Protocol.frame(Protocol.COUNTDOWN, countdown, warn ? 1 : 0));
+        if (elapsed >= 0) server.send(client, Protocol.frame(Protocol.ELAPSED, elapsed));
+        return true;
+    }
+
+    /**
+     * Frees the seat of a client that left (its player keeps its tokens and score).
+     */
+    synchronized void leave(Connection client) {
+        clients.remove(client);
+        if (client.seat >= 0 && seats[client.seat] == client) seats[client.seat] = null;
+    }
+
+    /**
+     * A key press of a client (called by the event loop, Player.keyPressed does not block).
+     */
+    void press(Connection client, int slot) {
+        if (client.seat >= 0 && slot >= 0 && slot < config.tableSize) players[client.seat].keyPressed(slot);
+    }
+
+    private void multicast(ByteBuffer frame) {
+        for (Connection client : clients)
+            server.send(client, frame.duplicate());
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = card;
+        Arrays.fill(tokens[slot], false);
+        multicast(Protocol.frame(Protocol.PLACE_CARD, card, slot));
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = -1;
+        Arrays.fill(tokens[slot], false);
+        multicast(Protocol.frame(Protocol.REMOVE_CARD, slot));
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot][player] = true;
+        multicast(Protocol.frame(Protocol.PLACE_TOKEN, player, slot));
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        for (boolean[] slot : tokens)
+            Arrays.fill(slot, false);
+        multicast(Protocol.frame(Protocol.REMOVE_TOKENS, 0));
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        Arrays.fill(tokens[slot], false);
+        multicast(Protocol.frame(Protocol.REMOVE_TOKENS, slot + 1));
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot][player] = false;
+        multicast(Protocol.frame(Protocol.REMOVE_TOKEN, player, slot));
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        countdown = Math.max(0, millies);
+        this.warn = warn;
+        multicast(Protocol.frame(Protocol.COUNTDOWN, countdown, warn ? 1 : 0));
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        elapsed = Math.max(0, millies);
+        multicast(Protocol.frame(Protocol.ELAPSED, elapsed));
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = Math.max(0, millies);
+        multicast(Protocol.frame(Protocol.FREEZE, player, freezes[player]));
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        multicast(Protocol.frame(Protocol.SCORE, player, score));
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        multicast(Protocol.frame(Protocol.WINNERS, Arrays.stream(players).asLongStream().toArray()));
+    }
+
+    @Override
+    public synchronized void dispose() {
+        multicast(Protocol.frame(Protocol.END));
+    }
+}
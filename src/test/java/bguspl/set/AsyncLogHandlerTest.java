@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    @Test
+    void flush_WritesEverythingPublished() throws InterruptedException {
+        MemoryLogHandler target = new MemoryLogHandler(10000);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 8192);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; ++i)
+                    handler.publish(new LogRecord(Level.INFO, "record {0}"));
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        handler.flush();
+
+        assertEquals(4000, target.published());
+        handler.close();
+    }
+
+    @Test
+    void publish_DropsWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryLogHandler records = new MemoryLogHandler(100);
+        MemoryLogHandler target = new MemoryLogHandler(100) {
+            @Override
+            public void publish(LogRecord record) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+                records.publish(record);
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(target, 2);
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        blocked.await(); // the writer took the first record and waits, so the buffer holds two more
+        for (int i = 0; i < 10; ++i)
+            handler.publish(new LogRecord(Level.INFO, "more"));
+        release.countDown();
+        handler.close();
+
+        List<LogRecord> written = records.records();
+        assertEquals(4, written.size());
+        assertEquals("first", written.get(0).getMessage());
+        assertTrue(written.get(1).getMessage().contains("8 records were dropped"), written.get(1).getMessage());
+    }
+}
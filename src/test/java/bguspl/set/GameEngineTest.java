@@ -0,0 +1,217 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GameEngineTest {
+
+    @Test
+    void playAll_IndependentGames() throws InterruptedException {
+        playAll("Threads");
+    }
+
+    @Test
+    void playAll_PooledWorkers() throws InterruptedException {
+        playAll("Pooled");
+    }
+
+    @Test
+    void playAll_VirtualWorkers() throws InterruptedException {
+        assumeTrue(Workers.virtualSupported(), "virtual threads need Java 21");
+        playAll("Virtual");
+    }
+
+    @Test
+    void play_CollectsStats() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("CollectStats", "True");
+        properties.setProperty("StatsExporters", "Jmx");
+        GameEngine game = new GameEngine(GameEngine.fastHeadlessConfig(properties));
+
+        GameEngine.Result result = GameEngine.playAll(Collections.singletonList(game), 60000).get(0);
+
+        GameStats stats = game.env.stats;
+        long legal = stats.counters().get("verdicts.legal").sum();
+        long illegal = stats.counters().get("verdicts.illegal").sum();
+        assertTrue(result.completed, result.toString());
+        assertEquals(Arrays.stream(result.scores).sum(), legal);
+        assertTrue(stats.counters().get("submissions").sum() >= legal + illegal);
+        assertEquals(legal + illegal, stats.checkSetNanos.count());
+        assertTrue(stats.findSetsNanos.count() > 0);
+        assertTrue(stats.setIndexNanos.count() > 0);
+        assertTrue(stats.dump().contains("player.2.frozenNanos"));
+    }
+
+    @Test
+    void play_SolverBotsSubmitLegalSets() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("CollectStats", "True");
+        properties.setProperty("StatsExporters", "");
+        properties.setProperty("BotStrategy", "Solver");
+        properties.setProperty("BotReactionSeconds", "0");
+        properties.setProperty("BotAccuracy", "1");
+        GameEngine game = new GameEngine(GameEngine.fastHeadlessConfig(properties));
+
+        GameEngine.Result result = GameEngine.playAll(Collections.singletonList(game), 60000).get(0);
+
+        long legal = game.env.stats.counters().get("verdicts.legal").sum();
+        long illegal = game.env.stats.counters().get("verdicts.illegal").sum();
+        assertTrue(result.completed, result.toString());
+        assertEquals(Arrays.stream(result.scores).sum(), legal);
+        // only sets that changed under the bot (another player took a card first) can be illegal
+        assertTrue(illegal < legal, legal + " legal, " + illegal + " illegal");
+    }
+
+    @Test
+    void play_InaccurateSolverBotsSubmitOnlyIllegalSets() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("CollectStats", "True");
+        properties.setProperty("StatsExporters", "");
+        properties.setProperty("BotStrategy", "Solver");
+        properties.setProperty("BotReactionSeconds", "0");
+        properties.setProperty("BotAccuracy", "0");
+        GameEngine game = new GameEngine(GameEngine.fastHeadlessConfig(properties));
+
+        // every set has a card swapped, so no one scores and the game runs until it is stopped
+        GameEngine.Result result = GameEngine.playAll(Collections.singletonList(game), 2000).get(0);
+
+        long legal = game.env.stats.counters().get("verdicts.legal").sum();
+        long illegal = game.env.stats.counters().get("verdicts.illegal").sum();
+        assertFalse(result.completed);
+        assertEquals(0, legal);
+        assertEquals(0, Arrays.stream(result.scores).sum());
+        assertTrue(illegal > 0);
+    }
+
+    @Test
+    void play_RecordsReplayableEvents(@TempDir Path directory) throws InterruptedException, IOException {
+        Properties properties = new Properties();
+        properties.setProperty("EventLogDirectory", directory.toString());
+        GameEngine game = new GameEngine(GameEngine.fastHeadlessConfig(properties));
+
+        GameEngine.Result result = GameEngine.playAll(Collections.singletonList(game), 60000).get(0);
+
+        GameReplay replay = new GameReplay(game.env.events.path());
+        RecordingUserInterface ui = new RecordingUserInterface(game.env.config);
+        long last = 0;
+        while (replay.step(ui)) {
+            if (replay.type() == EventLog.Type.TOKEN_PLACED)
+                assertTrue(replay.cardAt(replay.b()) >= 0, "a token was placed on an empty slot");
+            assertTrue(replay.nanos() >= last);
+            last = replay.nanos();
+        }
+        assertTrue(result.completed, result.toString());
+        assertEquals(3, replay.players);
+        for (int player = 0; player < result.scores.length; ++player) {
+            assertEquals(result.scores[player], replay.score(player));
+            assertEquals(result.scores[player], ui.score(player));
+        }
+        assertEquals(Arrays.stream(result.scores).sum(), replay.count(EventLog.Type.SCORE));
+        assertTrue(replay.count(EventLog.Type.VERDICT) <= replay.count(EventLog.Type.SUBMITTED));
+        assertTrue(replay.count(EventLog.Type.CARD_PLACED) >= game.env.config.tableSize);
+    }
+
+    @Test
+    void play_SameSeedSameGame(@TempDir Path directory) throws InterruptedException, IOException {
+        Properties properties = new Properties();
+        properties.setProperty("ExecutionMode", "Deterministic");
+        properties.setProperty("Seed", "42");
+        properties.setProperty("ComputerPlayers", "3");
+        properties.setProperty("TurnTimeoutSeconds", "5");
+        properties.setProperty("EventLogDirectory", directory.toString());
+        Config config = GameEngine.headlessConfig(properties);
+        GameEngine first = new GameEngine(config);
+        GameEngine second = new GameEngine(config);
+
+        List<GameEngine.Result> results = GameEngine.playAll(Arrays.asList(first, second), 60000);
+
+        assertTrue(results.get(0).completed, results.get(0).toString());
+        assertTrue(Arrays.stream(results.get(0).scores).sum() > 0);
+        assertArrayEquals(results.get(0).scores, results.get(1).scores);
+        assertEquals(events(first), events(second));
+    }
+
+    @Test
+    void restore_ContinuesFromCheckpoint(@TempDir Path directory) throws Exception {
+        Config config = GameEngine.fastHeadlessConfig(new Properties());
+        Path file = directory.resolve("game.checkpoint");
+
+        GameEngine first = new GameEngine(config);
+        first.start();
+        try (Checkpoint checkpoint = new Checkpoint(first, file)) {
+            checkpoint.save().get(10, TimeUnit.SECONDS);
+            checkpoint.save().get(10, TimeUnit.SECONDS);
+            assertEquals(2, checkpoint.saved());
+        }
+        first.terminate();
+        first.join(0);
+
+        GameSnapshot snapshot = Checkpoint.load(file);
+        assertArrayEquals(snapshot.toBytes(), GameSnapshot.read(ByteBuffer.wrap(snapshot.toBytes())).toBytes());
+        // every point took a set off the table, and no card got lost or doubled on the way
+        long cards = snapshot.deck.length + Arrays.stream(snapshot.slotToCard).filter(card -> card >= 0).count();
+        assertEquals(config.deckSize - config.featureSize * Arrays.stream(snapshot.scores).sum(), cards);
+
+        GameEngine second = new GameEngine(config);
+        second.restore(snapshot);
+        GameEngine.Result result = GameEngine.playAll(Collections.singletonList(second), 60000).get(0);
+
+        RecordingUserInterface ui = (RecordingUserInterface) second.env.ui;
+        assertTrue(result.completed, result.toString());
+        for (int player = 0; player < result.scores.length; ++player) {
+            assertTrue(result.scores[player] >= snapshot.scores[player]);
+            assertEquals(result.scores[player], ui.score(player));
+        }
+    }
+
+    /**
+     * @return - the events a game recorded, without their times.
+     */
+    private static List<String> events(GameEngine game) throws IOException {
+        GameReplay replay = new GameReplay(game.env.events.path());
+        List<String> events = new ArrayList<>();
+        while (replay.step(null))
+            events.add(replay.type() + " " + replay.a() + " " + replay.b());
+        return events;
+    }
+
+    private void playAll(String executionMode) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("ExecutionMode", executionMode);
+        Config config = GameEngine.fastHeadlessConfig(properties);
+
+        List<GameEngine> games = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+            games.add(new GameEngine(config));
+
+        List<GameEngine.Result> results = GameEngine.playAll(games, 60000);
+
+        assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            GameEngine.Result result = results.get(i);
+            RecordingUserInterface ui = (RecordingUserInterface) games.get(i).env.ui;
+            assertTrue(result.completed, result.toString());
+            assertEquals(3, result.scores.length);
+            assertTrue(result.winners.length > 0);
+            assertArrayEquals(result.winners, ui.winners());
+            for (int player = 0; player < result.scores.length; ++player)
+                assertEquals(result.scores[player], ui.score(player));
+        }
+    }
+}
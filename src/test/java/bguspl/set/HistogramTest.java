@@ -0,0 +1,50 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    void valueAtPercentile_SmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; ++i)
+            histogram.record(i);
+
+        assertEquals(100, histogram.count());
+        assertEquals(50, histogram.valueAtPercentile(50));
+        assertEquals(99, histogram.valueAtPercentile(99));
+        assertEquals(100, histogram.valueAtPercentile(100));
+        assertEquals(1, histogram.valueAtPercentile(0));
+        assertEquals(50.5, histogram.mean());
+    }
+
+    @Test
+    void valueAtPercentile_LargeValuesWithinRelativeError() {
+        Histogram histogram = new Histogram();
+        long[] values = {1_000, 123_456, 7_654_321, 1_000_000_000_000L, Long.MAX_VALUE};
+        for (long value : values) {
+            Histogram pair = new Histogram();
+            pair.record(value);
+            pair.record(Long.MAX_VALUE);
+            long found = pair.valueAtPercentile(50);
+            assertTrue(found >= value && found - value <= value / 64, value + " recorded as " + found);
+            histogram.add(pair);
+        }
+
+        assertEquals(2 * values.length, histogram.count());
+        assertEquals(Long.MAX_VALUE, histogram.max());
+        assertEquals(Long.MAX_VALUE, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    void record_NothingRecorded() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(99));
+        assertEquals(0, histogram.max());
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LobbyTest {
+
+    @Test
+    void open_TablesSpreadOverShards() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("ExecutionMode", "Pooled");
+        Config config = GameEngine.fastHeadlessConfig(properties);
+
+        try (Lobby lobby = new Lobby(2, () -> new GameEngine(config))) {
+            List<CompletableFuture<GameEngine.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 5; ++i)
+                results.add(lobby.open());
+
+            long sets = 0;
+            for (CompletableFuture<GameEngine.Result> future : results) {
+                GameEngine.Result result = future.get(60, TimeUnit.SECONDS);
+                assertTrue(result.completed, result.toString());
+                sets += Arrays.stream(result.scores).sum();
+            }
+
+            Lobby.Metrics metrics = lobby.metrics();
+            assertEquals(5, metrics.tables());
+            assertEquals(sets, metrics.sets());
+            assertEquals(0, metrics.waiting + metrics.running);
+            for (long tables : metrics.tables)
+                assertTrue(tables > 0, metrics.toString());
+        }
+    }
+
+    @Test
+    void seat_FillsTablesBeforeOpeningNewOnes() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        Config config = GameEngine.headlessConfig(properties);
+
+        CompletableFuture<GameEngine.Result> result;
+        try (Lobby lobby = new Lobby(1, () -> new GameEngine(config))) {
+            Lobby.Seat first = lobby.seat();
+            Lobby.Seat second = lobby.seat();
+            Lobby.Seat third = lobby.seat();
+            assertSame(first.game(), second.game());
+            assertNotSame(first.game(), third.game());
+            assertEquals(0, first.player);
+            assertEquals(1, second.player);
+
+            first.leave();
+            Lobby.Seat again = lobby.seat();
+            assertSame(first.game(), again.game());
+            assertEquals(0, again.player);
+            again.press(0);
+            result = third.result();
+        }
+        assertFalse(result.get(60, TimeUnit.SECONDS).completed);
+    }
+
+    @Test
+    void seat_WithoutHumanPlayersHostsNoTable() throws Exception {
+        Config config = GameEngine.fastHeadlessConfig(new Properties());
+        AtomicInteger created = new AtomicInteger();
+
+        try (Lobby lobby = new Lobby(1, () -> {
+            created.incrementAndGet();
+            return new GameEngine(config);
+        })) {
+            assertThrows(IllegalStateException.class, lobby::seat);
+            assertThrows(IllegalStateException.class, lobby::seat);
+            Lobby.Metrics metrics = lobby.metrics();
+            assertEquals(0, metrics.waiting + metrics.running);
+
+            // the game made to count the seats is the next table opened
+            assertTrue(lobby.open().get(60, TimeUnit.SECONDS).completed);
+            assertEquals(1, created.get());
+        }
+    }
+}
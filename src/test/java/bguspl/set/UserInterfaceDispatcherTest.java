@@ -0,0 +1,110 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class UserInterfaceDispatcherTest {
+
+    @Mock
+    private UserInterface ui;
+
+    private List<Runnable> batches;
+    private UserInterfaceDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        batches = new ArrayList<>();
+        dispatcher = new UserInterfaceDispatcher(ui, 2, batches::add);
+    }
+
+    private void runBatches() {
+        List<Runnable> pending = new ArrayList<>(batches);
+        batches.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    @Test
+    void setCountdownAndFreeze_LatestValueWins() {
+        for (long millies = 5000; millies > 0; millies -= 100)
+            dispatcher.setCountdown(millies, true);
+        dispatcher.setFreeze(1, 3000);
+        dispatcher.setFreeze(1, 2000);
+        dispatcher.setScore(0, 4);
+
+        assertEquals(1, batches.size());
+        verifyNoInteractions(ui);
+        runBatches();
+
+        verify(ui).setCountdown(100, true);
+        verify(ui, never()).setCountdown(200, true);
+        verify(ui).setFreeze(1, 2000);
+        verify(ui, never()).setFreeze(0, 0);
+        verify(ui).setScore(0, 4);
+        verify(ui, never()).setScore(1, 0);
+        verify(ui, never()).setElapsed(anyLong());
+    }
+
+    @Test
+    void placeAndRemove_AppliedInOrder() {
+        dispatcher.placeCard(7, 0);
+        dispatcher.placeToken(1, 0);
+        dispatcher.removeToken(1, 0);
+        dispatcher.removeCard(0);
+        runBatches();
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).placeCard(7, 0);
+        order.verify(ui).placeToken(1, 0);
+        order.verify(ui).removeToken(1, 0);
+        order.verify(ui).removeCard(0);
+    }
+
+    @Test
+    void announceWinner_AfterTheLatestValues() {
+        dispatcher.setScore(0, 1);
+        dispatcher.setFreeze(0, 1000);
+        dispatcher.setScore(0, 2);
+        dispatcher.setFreeze(0, 0);
+        dispatcher.setCountdown(0, true);
+        dispatcher.announceWinner(new int[]{0});
+        dispatcher.dispose();
+        runBatches();
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).setCountdown(0, true);
+        order.verify(ui).setScore(0, 2);
+        order.verify(ui).setFreeze(0, 0);
+        order.verify(ui).announceWinner(new int[]{0});
+        order.verify(ui).dispose();
+        verify(ui, never()).setScore(0, 1);
+    }
+
+    @Test
+    void setCountdown_ScheduledAgainAfterBatch() {
+        dispatcher.setCountdown(-3000, false);
+        runBatches();
+        dispatcher.setCountdown(2000, true);
+        runBatches();
+
+        verify(ui).setCountdown(-3000, false);
+        verify(ui).setCountdown(2000, true);
+        verify(ui, never()).setScore(anyInt(), anyInt());
+        verify(ui, never()).setFreeze(anyInt(), anyLong());
+    }
+}
@@ -0,0 +1,174 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(new MockLogger(), properties);
+    }
+
+    private static UtilImpl util(int featureSize, int featureCount) {
+        return new UtilImpl(config(featureSize, featureCount));
+    }
+
+    private static List<Integer> deck(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    private static void assertAllSetsFound(UtilImpl util, List<Integer> deck, int expected) {
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        Set<String> distinct = new HashSet<>();
+        for (int[] set : sets) {
+            assertTrue(util.testSet(set));
+            assertTrue(deck.containsAll(Arrays.stream(set).boxed().collect(Collectors.toList())));
+            int[] sorted = set.clone();
+            Arrays.sort(sorted);
+            assertEquals(Arrays.toString(sorted), Arrays.toString(set));
+            distinct.add(Arrays.toString(set));
+        }
+        assertEquals(expected, sets.size());
+        assertEquals(expected, distinct.size());
+    }
+
+    @Test
+    void findSets_StandardDeck() {
+        // the standard 81 card deck has 81 * 80 / 6 sets
+        assertAllSetsFound(util(3, 4), deck(81), 1080);
+    }
+
+    @Test
+    void findSets_OtherShapes() {
+        // 4 choices of 2 features: 4 + 4 sets with one feature the same, 4! sets with both features different
+        assertAllSetsFound(util(4, 2), deck(16), 4 + 4 + 4 * 3 * 2);
+        // 2 choices of 3 features: every pair of distinct cards is a set
+        assertAllSetsFound(util(2, 3), deck(8), 8 * 7 / 2);
+    }
+
+    @Test
+    void findSets_LimitAndShuffledInput() {
+        UtilImpl util = util(3, 4);
+        List<Integer> cards = Arrays.asList(80, 5, 0, 40, 3, 6);
+        assertEquals(1, util.findSets(cards, 1).size());
+        assertEquals(0, util.findSets(Arrays.asList(1, 3, 5), Integer.MAX_VALUE).size());
+        assertEquals(0, util.findSets(Arrays.asList(1, 2), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_ParallelMatchesSequential() {
+        UtilImpl util = util(4, 4);
+        List<String> sequential = util.streamSets(deck(256)).map(Arrays::toString).collect(Collectors.toList());
+
+        FeatureTable features = new FeatureTable(config(4, 4));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SetFinder finder = new SetFinder(features, CompletionTable.of(features), pool);
+            List<String> parallel = finder.findSets(deck(256), Integer.MAX_VALUE).stream()
+                    .map(Arrays::toString).collect(Collectors.toList());
+            assertEquals(sequential, parallel);
+            assertAllSetsFound(util, deck(256), parallel.size());
+
+            List<int[]> some = finder.findSets(deck(256), 10);
+            assertEquals(10, some.size());
+            some.forEach(set -> assertTrue(util.testSet(set)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void streamSets_MatchesFindSets() {
+        UtilImpl util = util(3, 4);
+        List<Integer> cards = Arrays.asList(80, 5, 0, 40, 3, 6, 17, 29, 51, 64);
+        assertEquals(util.findSets(cards, Integer.MAX_VALUE).stream().map(Arrays::toString).collect(Collectors.toList()),
+                util.streamSets(cards).map(Arrays::toString).collect(Collectors.toList()));
+        assertEquals(1080, util.streamSets(deck(81)).parallel().count());
+        assertEquals(3, util.streamSets(deck(81)).limit(3).count());
+    }
+
+    /**
+     * The definition of a set, straight from the features: every feature is all the same or all different.
+     */
+    private static boolean isSet(UtilImpl util, int[] cards) {
+        int[][] features = util.cardsToFeatures(cards);
+        for (int i = 0; i < features[0].length; ++i) {
+            Set<Integer> values = new HashSet<>();
+            for (int[] card : features)
+                values.add(card[i]);
+            if ((values.size() == 1) == (values.size() == cards.length)) return false;
+        }
+        return true;
+    }
+
+    @Test
+    void testSet_MatchesDefinition() {
+        UtilImpl util = util(3, 4);
+        for (int a = 0; a < 81; ++a)
+            for (int b = a + 1; b < 81; b += 7)
+                for (int c = b + 1; c < 81; c += 5)
+                    assertEquals(isSet(util, new int[]{a, b, c}), util.testSet(new int[]{c, a, b}));
+
+        UtilImpl four = util(4, 3);
+        for (int a = 0; a < 64; a += 3)
+            for (int b = a + 1; b < 64; b += 2)
+                for (int c = b + 1; c < 64; ++c)
+                    for (int d = c + 1; d < 64; d += 11)
+                        assertEquals(isSet(four, new int[]{a, b, c, d}), four.testSet(new int[]{a, b, c, d}));
+    }
+
+    /**
+     * Checks every combination of featureSize - 1 cards (from the first given card on): the completing card, if any,
+     * makes a set with them, and no other card does.
+     */
+    private static void assertCompletes(UtilImpl util, int deckSize, int[] cards, int n) {
+        if (n < cards.length) {
+            for (int card = n == 0 ? 0 : cards[n - 1] + 1; card < deckSize; ++card) {
+                cards[n] = card;
+                assertCompletes(util, deckSize, cards, n + 1);
+            }
+            return;
+        }
+        int expected = -1;
+        int[] set = Arrays.copyOf(cards, cards.length + 1);
+        for (int card = 0; card < deckSize; ++card) {
+            int last = card;
+            set[cards.length] = last;
+            if (Arrays.stream(cards).noneMatch(other -> other == last) && util.testSet(set)) {
+                assertEquals(-1, expected, "two cards complete " + Arrays.toString(cards));
+                expected = last;
+            }
+        }
+        assertEquals(expected, util.completeSet(cards.clone()), Arrays.toString(cards));
+    }
+
+    @Test
+    void completeSet_MatchesTestSet() {
+        assertCompletes(util(3, 4), 81, new int[2], 0);
+        assertCompletes(util(4, 2), 16, new int[3], 0);
+        assertEquals(-1, util(3, 4).completeSet(new int[]{5, 5}));
+        // with two choices every pair of distinct cards is a set, so no card is the one that completes it
+        assertEquals(-1, util(2, 3).completeSet(new int[]{5}));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -13,11 +13,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class DealerTest {
@@ -32,6 +32,8 @@ class DealerTest {
 
     private Player [] players;
 
+    private Env env;
+
     void assertInvariants() {
         assertTrue(players.length >= 0);
         assertTrue(dealer.deck.size() >= 0);
@@ -40,7 +42,7 @@ class DealerTest {
     @BeforeEach
     void setUp() {
         // purposely do not find the configuration files (use defaults here).
-        Env env = new Env(logger, new Config(logger, ""), ui, new UtilImpl(new Config(logger, "")));
+        env = new Env(logger, new Config(logger, ""), ui, new UtilImpl(new Config(logger, "")));
         players = new Player[2];
         for(int i=0; i<players.length; i++)
         {
@@ -61,14 +63,17 @@ class DealerTest {
         //test if noSetsOnTable returns true when there are no sets on the table
 
         //set up a table with no set on it
-        Integer[] slots = {1, 3, 5, null,
-                           null, null, null, null,
-                           null, null, null, null
-                        };
-        when(table.getSlots()).thenReturn(slots);
-
+        Table table = new Table(env);
+        table.placeCard(1, 0);
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
+        Dealer dealer = new Dealer(env, table, players);
 
         assertEquals(true, dealer.noSetsOnTable());
+
+        //completing a set (0001, 0010 and 0022)
+        table.placeCard(8, 3);
+        assertEquals(false, dealer.noSetsOnTable());
         
     }
 
@@ -87,4 +92,36 @@ class DealerTest {
         //checks that the terminate order went through
         assertEquals(true, dealer.shouldFinish());
     }
+
+    @Test
+    void checklegal_UnparksOnlyTheSubmittingPlayer() throws InterruptedException {
+
+        Config config = new Config(logger, "");
+        Env env = new Env(logger, config, ui, new UtilImpl(config));
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(env, dealer, table, i, false);
+            players[i].playerThread = new Thread(LockSupport::park);
+            players[i].playerThread.start();
+        }
+
+        //both players wait with the same cards (0000, 0001 and 0010, not a set), but only the first submitted them
+        for (int card : new int[]{0, 1, 3}) {
+            table.placeCard(card, card);
+            players[0].select(card);
+            players[1].select(card);
+        }
+        for (Player player : players)
+            while (player.playerThread.getState() != Thread.State.WAITING) Thread.yield();
+        dealer.submitCards(players[0]);
+        dealer.checklegal();
+
+        players[0].playerThread.join(1000);
+        assertEquals(Thread.State.TERMINATED, players[0].playerThread.getState());
+        assertEquals(Thread.State.WAITING, players[1].playerThread.getState());
+        assertEquals(0, players[0].legalset);
+        assertEquals(2, players[1].legalset);
+        LockSupport.unpark(players[1].playerThread);
+    }
 }
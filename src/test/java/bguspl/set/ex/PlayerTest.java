@@ -104,7 +104,7 @@ class PlayerTest {
         dealer.dealing = false;
         player.isFrozen = false;
 
-        when(table.getCard(1)).thenReturn(1);
+        when(table.cardAt(1)).thenReturn(1);
         dealer.terminate = false;
 
         player.playerThread = new Thread();
@@ -113,7 +113,7 @@ class PlayerTest {
         player.keyPressed(1);
 
         //make sure that the order went through
-        assertEquals(q.peek(), player.actionsToPerform.peek());
+        assertEquals(q.peek(), player.actionsToPerform.peek().slot);
 
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RemainingSetsTest {
+
+    RemainingSets remainingSets;
+    private Env env;
+
+    @BeforeEach
+    void setUp() {
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, new Properties());
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        remainingSets = new RemainingSets(env);
+    }
+
+    @Test
+    void collect_OneCard() {
+
+        // every card of the standard deck is a part of 40 of its 1080 sets
+        assertEquals(1080, remainingSets.count());
+        assertEquals(40, remainingSets.setsWith(0));
+
+        remainingSets.collect(0);
+        assertEquals(1040, remainingSets.count());
+        assertEquals(0, remainingSets.setsWith(0));
+        assertEquals(39, remainingSets.setsWith(1));
+
+        // collecting the same card again changes nothing
+        remainingSets.collect(0);
+        assertEquals(1040, remainingSets.count());
+    }
+
+    @Test
+    void collect_MatchesSearch() {
+        int[] collected = {0, 1, 2, 40, 41, 42, 80, 13, 27, 66};
+        for (int card : collected)
+            remainingSets.collect(card);
+
+        List<Integer> live = IntStream.range(0, env.config.deckSize)
+                .filter(card -> IntStream.of(collected).noneMatch(c -> c == card))
+                .boxed().collect(Collectors.toList());
+        assertEquals(env.util.findSets(live, Integer.MAX_VALUE).size(), remainingSets.count());
+    }
+}
@@ -4,25 +4,32 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
-
-    @BeforeEach
-    void setUp() {
+    private Config config;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
+    private static Properties properties() {
         Properties properties = new Properties();
         properties.put("Rows", "2");
         properties.put("Columns", "2");
@@ -31,36 +38,40 @@ class TableTest {
         properties.put("TableDelaySeconds", "0");
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
+        return properties;
+    }
+
+    @BeforeEach
+    void setUp() {
+
         MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        config = new Config(logger, properties());
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.EMPTY);
+        Arrays.fill(cardToSlot, Table.EMPTY);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
-        for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
-        }
+        for (int i = 0; i < slotToCard.length; ++i)
+            table.placeCard(i, i);
     }
 
     private void placeSomeCardsAndAssert() {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
     }
 
     @Test
@@ -107,8 +118,8 @@ class TableTest {
 
         //removing the card from the same space
         table.removeCard(3);
-        assertEquals(slotToCard[3], null);
-        assertEquals(cardToSlot[8], null);
+        assertEquals(slotToCard[3], Table.EMPTY);
+        assertEquals(cardToSlot[8], Table.EMPTY);
     }
 
     @Test
@@ -135,6 +146,139 @@ class TableTest {
 
     }
 
+    @Test
+    void nextSlots_SomeSlotsAreFilled() {
+
+        fillSomeSlots();
+        assertEquals(1, table.nextOccupiedSlot(0));
+        assertEquals(2, table.nextOccupiedSlot(2));
+        assertEquals(Table.EMPTY, table.nextOccupiedSlot(3));
+        assertEquals(0, table.nextEmptySlot(0));
+        assertEquals(3, table.nextEmptySlot(1));
+
+        fillAllSlots();
+        assertEquals(Table.EMPTY, table.nextEmptySlot(0));
+        assertEquals(slotToCard.length, table.countCards());
+    }
+
+    @Test
+    void tokens_PlaceAndRemove() {
+
+        fillSomeSlots();
+        table.placeToken(0, 1);
+        table.placeToken(1, 1);
+        assertEquals(0, table.nextPlayerOnSlot(1, 0));
+        assertEquals(1, table.nextPlayerOnSlot(1, 1));
+        assertEquals(Table.EMPTY, table.nextPlayerOnSlot(2, 0));
+
+        table.removeToken(0, 1);
+        assertEquals(1, table.nextPlayerOnSlot(1, 0));
+
+        table.removeCard(1);
+        assertEquals(Table.EMPTY, table.nextPlayerOnSlot(1, 0));
+    }
+
+    @Test
+    void placeAndRemoveCard_ShownAfterTheDelay() throws InterruptedException {
+        Properties properties = properties();
+        properties.put("TableDelaySeconds", "0.3");
+        Config delayed = new Config(new MockLogger(), properties);
+        List<String> shown = Collections.synchronizedList(new ArrayList<>());
+        Table table = new Table(new Env(new MockLogger(), delayed, new MockUserInterface() {
+            @Override
+            public void placeCard(int card, int slot) { shown.add("place " + card + " " + slot); }
+            @Override
+            public void removeCard(int slot) { shown.add("remove " + slot); }
+        }, new MockUtil()));
+
+        // the table changes at once, and the user interface catches up a delay per change later
+        long start = System.nanoTime();
+        table.placeCard(3, 0);
+        table.placeCard(5, 1);
+        table.removeCard(0);
+        assertTrue(System.nanoTime() - start < delayed.tableDelayMillis * 1_000_000);
+        assertEquals(Table.EMPTY, table.cardAt(0));
+        assertEquals(5, table.cardAt(1));
+        assertTrue(shown.isEmpty());
+
+        table.awaitDealt();
+        assertTrue(System.nanoTime() - start >= 3 * delayed.tableDelayMillis * 1_000_000);
+        assertEquals(Arrays.asList("place 3 0", "place 5 1", "remove 0"), shown);
+    }
+
+    @Test
+    void lockSlot_OtherSlotsStayFree() throws InterruptedException {
+
+        fillSomeSlots();
+        table.lockSlot(1);
+        try {
+            // another player toggles a token on another slot while slot 1 is locked
+            Thread player = new Thread(() -> {
+                table.lockSlot(2);
+                try {
+                    table.placeToken(1, 2);
+                } finally {
+                    table.unlockSlot(2);
+                }
+            });
+            player.start();
+            player.join(10000);
+            assertFalse(player.isAlive());
+            assertEquals(1, table.nextPlayerOnSlot(2, 0));
+        } finally {
+            table.unlockSlot(1);
+        }
+    }
+
+    @Test
+    void lockSlots_KeepPlayersOutOfRemovedSlots() throws InterruptedException {
+
+        fillSomeSlots();
+        int[] slots = {2, 1};
+        AtomicInteger seen = new AtomicInteger();
+        table.lockSlots(slots);
+        Thread player = new Thread(() -> {
+            table.lockSlot(1);
+            try {
+                seen.set(table.cardAt(1));
+            } finally {
+                table.unlockSlot(1);
+            }
+        });
+        try {
+            player.start();
+            // the player waits for the lock of the slot the dealer removes
+            while (player.getState() != Thread.State.WAITING) Thread.yield();
+            table.removeCard(1);
+            table.removeCard(2);
+        } finally {
+            table.unlockSlots(slots);
+        }
+        player.join(10000);
+        assertFalse(player.isAlive());
+        assertEquals(Table.EMPTY, seen.get());
+    }
+
+    @Test
+    void sets_PlaceAndRemove() {
+        Table table = new Table(new Env(new MockLogger(), config, new MockUserInterface(), new UtilImpl(config)));
+
+        // 0000, 0001, 0011 and 0002: only the first, second and last form a set
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(4, 2);
+        assertFalse(table.hasSet());
+
+        table.placeCard(2, 3);
+        assertTrue(table.hasSet());
+        assertEquals(1, table.sets().size());
+        assertEquals("[0, 1, 2]", Arrays.toString(table.sets().get(0)));
+
+        table.removeCard(1);
+        assertFalse(table.hasSet());
+        assertTrue(table.sets().isEmpty());
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -178,11 +322,21 @@ class TableTest {
             return false;
         }
 
+        @Override
+        public int completeSet(int[] cards) {
+            return -1;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;
         }
 
+        @Override
+        public Stream<int[]> streamSets(List<Integer> deck) {
+            return Stream.empty();
+        }
+
         @Override
         public void spin() {}
     }
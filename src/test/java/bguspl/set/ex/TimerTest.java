@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import bguspl.set.Workers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TimerTest {
+
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    private ManualWorkers workers;
+    private Timer timer;
+
+    /**
+     * Workers with a clock that moves only when told to, and a periodic task that runs only when told to.
+     */
+    private static class ManualWorkers extends Workers {
+
+        long now;
+        Runnable tick;
+
+        @Override
+        public Worker create(String name, Runnable target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public Runnable repeat(String name, Runnable task, long periodMillis) {
+            tick = task;
+            return () -> tick = null;
+        }
+
+        void advance(long millis) {
+            now += TimeUnit.MILLISECONDS.toNanos(millis);
+            tick.run();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("TurnTimeoutSeconds", "5");
+        properties.setProperty("TurnTimeoutWarningSeconds", "2");
+        Config config = new Config(logger, properties);
+        workers = new ManualWorkers();
+        timer = new Timer(config.turnTimeoutMillis, new Env(logger, config, ui, new UtilImpl(config), workers));
+        timer.start();
+        timer.reset();
+    }
+
+    @Test
+    void tick_ShowsWholeSecondsThenTenths() {
+        workers.advance(0);
+        workers.advance(300);
+        verify(ui, times(1)).setCountdown(5000, false);
+
+        workers.advance(1000);
+        verify(ui).setCountdown(4000, false);
+
+        workers.advance(1750);
+        verify(ui).setCountdown(2000, true);
+        workers.advance(60);
+        verify(ui).setCountdown(1900, true);
+    }
+
+    @Test
+    void counting_EndsAtTheDeadline() {
+        workers.advance(4999);
+        assertTrue(timer.counting());
+        assertTrue(timer.remainingNanos() > 0);
+
+        workers.advance(1);
+        assertFalse(timer.counting());
+        verify(ui).setCountdown(0, true);
+
+        timer.reset();
+        assertTrue(timer.counting());
+    }
+
+    @Test
+    void stop_CancelsTheTicks() {
+        assertNotNull(workers.tick);
+        timer.stop();
+        assertFalse(timer.counting());
+        verify(ui, times(0)).setCountdown(anyLong(), anyBoolean());
+        assertNull(workers.tick);
+    }
+}
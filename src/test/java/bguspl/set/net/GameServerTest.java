@@ -0,0 +1,106 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import bguspl.set.GameEngine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameServerTest {
+
+    @Test
+    void loopback_ClientsJoinAndPlay() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+
+        try (GameServer server = new GameServer(logger, GameEngine.fastHeadlessConfig(properties), 2, address)) {
+            server.start();
+            // one client more than there are seats
+            LoadClient load = new LoadClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()),
+                    5, 2, 5, new Random(1));
+
+            LoadClient.Report report = load.run(1500);
+
+            assertEquals(4, report.welcomed, report.toString());
+            assertTrue(report.presses > 0, report.toString());
+            assertTrue(report.echoes > 0, report.toString());
+            assertEquals(report.echoes, report.echoNanos.count());
+        }
+    }
+
+    @Test
+    void join_SendsTheStateOfTheTable() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        Config config = GameEngine.fastHeadlessConfig(properties);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+
+        try (GameServer server = new GameServer(logger, config, 0, address)) {
+            RemoteTable table = new RemoteTable(0, server, config);
+            table.placeCard(5, 0);
+            table.placeCard(7, 1);
+            table.placeToken(1, 0);
+            table.placeToken(0, 1);
+            table.removeToken(0, 1);
+            table.setScore(1, 2);
+            table.setFreeze(1, 3000);
+            table.setCountdown(40000, false);
+
+            Connection client = new Connection(null);
+            assertTrue(table.join(client));
+
+            List<String> frames = new ArrayList<>();
+            Protocol.Reader reader = new Protocol.Reader();
+            for (ByteBuffer frame : client.out) {
+                assertTrue(reader.next(frame));
+                frames.add(reader.type + " " + Arrays.toString(Arrays.copyOf(reader.values, reader.count)));
+            }
+            assertEquals(Arrays.asList(
+                    Protocol.WELCOME + " [0, 0, 3, 4, 2]",
+                    Protocol.PLACE_CARD + " [5, 0]",
+                    Protocol.PLACE_CARD + " [7, 1]",
+                    Protocol.PLACE_TOKEN + " [1, 0]",
+                    Protocol.SCORE + " [0, 0]",
+                    Protocol.SCORE + " [1, 2]",
+                    Protocol.FREEZE + " [1, 3000]",
+                    Protocol.COUNTDOWN + " [40000, 0]"), frames);
+        }
+    }
+
+    @Test
+    void close_WithoutStartFreesThePort() throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+
+        GameServer server = new GameServer(logger, GameEngine.headlessConfig(new Properties()), 1, address);
+        int port = server.port();
+        server.close();
+
+        try (ServerSocketChannel again = ServerSocketChannel.open()) {
+            again.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        }
+    }
+}